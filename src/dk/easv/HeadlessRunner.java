@@ -0,0 +1,270 @@
+package dk.easv;
+
+import dk.easv.bll.bot.IBot;
+import dk.easv.bll.game.GameManager;
+import dk.easv.bll.game.SimulationRunner;
+import dk.easv.bll.game.stats.GameResult;
+import dk.easv.bll.game.stats.RatingTable;
+import dk.easv.bll.game.stats.ResultAggregator;
+import dk.easv.bll.game.stats.Sprt;
+import dk.easv.bll.game.stats.Tournament;
+import dk.easv.dal.DynamicBotClassHandler;
+import dk.easv.dal.GameRecordLog;
+
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plays bot vs bot games from the command line, without starting JavaFX.
+ *
+ * Usage: {@code HeadlessRunner [options] <bot1> <bot2>}
+ * or {@code HeadlessRunner --tournament roundrobin|swiss [options] [bots...]}
+ * where a bot is a class name, e.g. RandomBot (from dk.easv.bll.bot) or a full class name.
+ * The compiled bot classes must be on the class path. A tournament without
+ * bots plays all the bots in src/dk/easv/bll/bot, run it from the project folder.
+ *
+ * Options:
+ *   --games N            number of games (default 100), in a tournament per pairing (default 10)
+ *   --rounds N           rounds of a Swiss tournament
+ *   --threads N          number of threads (default: number of cores)
+ *   --time MS            time per move in milliseconds (default 1000)
+ *   --timeout POLICY     forfeit, random or ignore (default forfeit)
+ *   --output FILE        write to the file instead of stdout
+ *   --log FILE           append every game with its moves to a game record log
+ *   --seed N             seed of the simulation, to play the same games again (default random)
+ *   --replay SEED        play only the game with this seed from a game record log,
+ *                        with the bots in the order they played, player 0 first
+ *   --sprt E0,E1[,A,B]   stop as soon as a sequential probability ratio test decides
+ *                        whether bot1 is E0 or E1 Elo stronger, with error rates A and B (default 0.05)
+ *
+ * Every game is written as a line "player0,player1,winner", followed by a
+ * summary line starting with #. A tournament writes a line per pairing and
+ * the final rating table.
+ */
+public class HeadlessRunner {
+
+    private static final String BOT_PACKAGE = "dk.easv.bll.bot.";
+
+    public static void main(String[] args) throws InterruptedException {
+        long games = -1;
+        Tournament.Format format = null;
+        int rounds = -1;
+        Sprt sprt = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int timePerMove = 1000;
+        GameManager.TimeoutPolicy timeoutPolicy = GameManager.TimeoutPolicy.Forfeit;
+        String output = null;
+        String logFile = null;
+        Long seed = null;
+        Long replaySeed = null;
+        List<String> botNames = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--games": games = Long.parseLong(args[++i]); break;
+                    case "--threads": threads = Integer.parseInt(args[++i]); break;
+                    case "--time": timePerMove = Integer.parseInt(args[++i]); break;
+                    case "--timeout": timeoutPolicy = parseTimeoutPolicy(args[++i]); break;
+                    case "--output": output = args[++i]; break;
+                    case "--log": logFile = args[++i]; break;
+                    case "--seed": seed = Long.parseLong(args[++i]); break;
+                    case "--replay": replaySeed = Long.parseLong(args[++i]); break;
+                    case "--tournament": format = parseFormat(args[++i]); break;
+                    case "--rounds": rounds = Integer.parseInt(args[++i]); break;
+                    case "--sprt": sprt = parseSprt(args[++i]); break;
+                    default:
+                        if (args[i].startsWith("--"))
+                            throw new IllegalArgumentException("Unknown argument " + args[i]);
+                        botNames.add(args[i]);
+                }
+            }
+            if (format == null && botNames.size() != 2)
+                throw new IllegalArgumentException("Two bots are needed");
+            if (format != null && sprt != null)
+                throw new IllegalArgumentException("--sprt is for two bots, not a tournament");
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException ex) {
+            System.err.println(ex instanceof ArrayIndexOutOfBoundsException ? "Missing value" : ex.getMessage());
+            printUsage();
+            System.exit(2);
+            return;
+        }
+
+        PrintStream out = System.out;
+        try {
+            if (output != null)
+                out = new PrintStream(new FileOutputStream(output), false, "UTF-8");
+        } catch (FileNotFoundException | UnsupportedEncodingException ex) {
+            System.err.println("Cannot write to " + output + ": " + ex.getMessage());
+            System.exit(1);
+        }
+
+        GameRecordLog log = null;
+        try {
+            if (logFile != null)
+                log = new GameRecordLog(Paths.get(logFile));
+        } catch (IOException ex) {
+            System.err.println("Cannot open the log " + logFile + ": " + ex.getMessage());
+            System.exit(1);
+        }
+
+        if (format != null) {
+            runTournament(format, botNames, games < 0 ? 10 : (int) games, rounds, threads, timePerMove, timeoutPolicy,
+                    log, out);
+            closeLog(log);
+            return;
+        }
+
+        SimulationRunner runner = new SimulationRunner(loadBot(botNames.get(0)), loadBot(botNames.get(1)),
+                games < 0 ? 100 : games, threads);
+        runner.setTimePerMove(timePerMove);
+        runner.setTimeoutPolicy(timeoutPolicy);
+        if (seed != null)
+            runner.setSeed(seed);
+        if (replaySeed != null) {
+            long start = System.nanoTime();
+            GameResult result = runner.replay(replaySeed, true);
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            out.println(result.getPlayer0() + "," + result.getPlayer1() + "," + result.getWinner());
+            out.println("# replayed game " + replaySeed + " in " + millis + " ms");
+            out.flush();
+            if (out != System.out)
+                out.close();
+            closeLog(log);
+            return;
+        }
+        runner.setRecordLog(log);
+        ResultAggregator results = new ResultAggregator();
+        PrintStream gameOut = out;
+        Sprt test = sprt;
+        runner.setResultListener((result, bot1Started) -> {
+            results.gameFinished(result, bot1Started);
+            gameOut.println(result.getPlayer0() + "," + result.getPlayer1() + "," + result.getWinner());
+            if (test != null)
+                test.gameFinished(result, bot1Started);
+        });
+        if (sprt != null)
+            sprt.setDecisionListener(decision -> runner.cancel());
+
+        long start = System.nanoTime();
+        runner.start();
+        runner.awaitCompletion();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        ResultAggregator.Snapshot total = results.snapshot();
+        out.println("# " + botNames.get(0) + " vs " + botNames.get(1) + " | " + total
+                + " | score " + String.format("%.3f", total.getBot1Score())
+                + " | timeouts " + runner.getTimeouts(1) + "/" + runner.getTimeouts(2)
+                + " | " + total.getGames() + " games in " + millis + " ms");
+        if (sprt != null)
+            out.println("# " + sprt);
+        out.flush();
+        if (out != System.out)
+            out.close();
+        closeLog(log);
+    }
+
+    private static void closeLog(GameRecordLog log) {
+        if (log == null)
+            return;
+        try {
+            log.close();
+        } catch (IOException ex) {
+            System.err.println("Cannot close the log " + log.getFile() + ": " + ex.getMessage());
+        }
+    }
+
+    private static void runTournament(Tournament.Format format, List<String> botNames, int gamesPerPairing,
+            int rounds, int threads, int timePerMove, GameManager.TimeoutPolicy timeoutPolicy, GameRecordLog log,
+            PrintStream out)
+            throws InterruptedException {
+        List<Class<? extends IBot>> bots = new ArrayList<>();
+        if (botNames.isEmpty()) {
+            try {
+                bots = DynamicBotClassHandler.loadBotClasses();
+            } catch (IOException | ClassNotFoundException ex) {
+                System.err.println("Cannot load the bots: " + ex);
+                System.exit(1);
+            }
+        }
+        else {
+            for (String name : botNames)
+                bots.add(loadBot(name));
+        }
+
+        Tournament tournament = new Tournament(bots, format);
+        tournament.setGamesPerPairing(gamesPerPairing);
+        if (rounds > 0)
+            tournament.setRounds(rounds);
+        tournament.setThreads(threads);
+        tournament.setTimePerMove(timePerMove);
+        tournament.setTimeoutPolicy(timeoutPolicy);
+        tournament.setRecordLog(log);
+        tournament.setPairingListener((bot1, bot2, result) ->
+                out.println(bot1 + " vs " + bot2 + " | " + result));
+
+        long start = System.nanoTime();
+        List<RatingTable.Rating> ratings = tournament.run();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        out.println("# " + format + " tournament, " + bots.size() + " bots in " + millis + " ms");
+        out.println("# rating [95% interval]");
+        for (RatingTable.Rating rating : ratings)
+            out.println("# " + rating);
+        out.flush();
+        if (out != System.out)
+            out.close();
+    }
+
+    /**
+     * @param name A simple class name in dk.easv.bll.bot, or a full class name
+     * @return The bot class
+     */
+    static Class<? extends IBot> loadBot(String name) {
+        String className = name.contains(".") ? name : BOT_PACKAGE + name;
+        try {
+            return Class.forName(className).asSubclass(IBot.class);
+        } catch (ClassNotFoundException | ClassCastException ex) {
+            System.err.println("Not a bot: " + className);
+            System.exit(2);
+            return null;
+        }
+    }
+
+    private static GameManager.TimeoutPolicy parseTimeoutPolicy(String value) {
+        switch (value.toLowerCase()) {
+            case "forfeit": return GameManager.TimeoutPolicy.Forfeit;
+            case "random": return GameManager.TimeoutPolicy.RandomMove;
+            case "ignore": return GameManager.TimeoutPolicy.Ignore;
+            default: throw new IllegalArgumentException("Unknown timeout policy " + value);
+        }
+    }
+
+    private static Sprt parseSprt(String value) {
+        String[] parts = value.split(",");
+        if (parts.length != 2 && parts.length != 4)
+            throw new IllegalArgumentException("--sprt needs elo0,elo1 or elo0,elo1,alpha,beta");
+        double alpha = parts.length == 4 ? Double.parseDouble(parts[2]) : 0.05;
+        double beta = parts.length == 4 ? Double.parseDouble(parts[3]) : 0.05;
+        return new Sprt(Double.parseDouble(parts[0]), Double.parseDouble(parts[1]), alpha, beta);
+    }
+
+    private static Tournament.Format parseFormat(String value) {
+        switch (value.toLowerCase()) {
+            case "roundrobin": return Tournament.Format.RoundRobin;
+            case "swiss": return Tournament.Format.Swiss;
+            default: throw new IllegalArgumentException("Unknown tournament format " + value);
+        }
+    }
+
+    private static void printUsage() {
+        System.err.println("Usage: HeadlessRunner [--games N] [--threads N] [--time MS]"
+                + " [--timeout forfeit|random|ignore] [--output FILE] [--log FILE] [--seed N] [--replay SEED] [--sprt elo0,elo1[,alpha,beta]] <bot1> <bot2>");
+        System.err.println("       HeadlessRunner --tournament roundrobin|swiss [--rounds N] [options] [bots...]");
+    }
+}
@@ -0,0 +1,65 @@
+package dk.easv;
+
+import dk.easv.bll.game.stats.GameLogAnalyzer;
+import dk.easv.bll.game.stats.GameLogReport;
+import dk.easv.dal.GameRecordLog;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Prints statistics over a game record log written by HeadlessRunner --log,
+ * reading it in parallel without loading it.
+ *
+ * Usage: {@code ReportRunner [options] <log file>}
+ *
+ * Options:
+ *   --threads N          number of threads (default: number of cores)
+ *   --bot NAME           only games played by the bot with this name
+ */
+public class ReportRunner {
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        String bot = null;
+        String file = null;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--threads": threads = Integer.parseInt(args[++i]); break;
+                    case "--bot": bot = args[++i]; break;
+                    default:
+                        if (args[i].startsWith("--") || file != null)
+                            throw new IllegalArgumentException("Unknown argument " + args[i]);
+                        file = args[i];
+                }
+            }
+            if (file == null)
+                throw new IllegalArgumentException("A log file is needed");
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException ex) {
+            System.err.println(ex instanceof ArrayIndexOutOfBoundsException ? "Missing value" : ex.getMessage());
+            System.err.println("Usage: ReportRunner [--threads N] [--bot NAME] <log file>");
+            System.exit(2);
+            return;
+        }
+
+        try (GameRecordLog log = new GameRecordLog(Paths.get(file), true)) {
+            GameLogAnalyzer analyzer = new GameLogAnalyzer(log);
+            analyzer.setThreads(threads);
+            String name = bot;
+            if (name != null)
+                analyzer.setFilter(record -> record.getPlayer0().equals(name) || record.getPlayer1().equals(name));
+
+            long start = System.nanoTime();
+            GameLogReport report = analyzer.run();
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            System.out.print(report);
+            System.out.println();
+            System.out.println("# " + log.getRecordCount() + " records, " + log.getSize() + " bytes, read in " + millis + " ms");
+        } catch (IOException ex) {
+            System.err.println("Cannot read the log " + file + ": " + ex.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package dk.easv.bll.bot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tells an asynchronous bot that its move is no longer wanted, because the
+ * time is up or the game was abandoned. A bot can check isCancelled while it
+ * thinks, or register a callback that aborts its work, like a network request.
+ */
+public final class CancellationToken {
+
+    private final List<Runnable> callbacks = new ArrayList<>();
+    private volatile boolean cancelled;
+
+    /**
+     * Cancels and runs the callbacks on the calling thread. Later calls do nothing.
+     */
+    public void cancel() {
+        List<Runnable> toRun;
+        synchronized (callbacks) {
+            if (cancelled)
+                return;
+            cancelled = true;
+            toRun = new ArrayList<>(callbacks);
+            callbacks.clear();
+        }
+        for (Runnable callback : toRun)
+            callback.run();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @param callback Run when the token is cancelled, or at once if it already is
+     */
+    public void onCancel(Runnable callback) {
+        synchronized (callbacks) {
+            if (!cancelled) {
+                callbacks.add(callback);
+                return;
+            }
+        }
+        callback.run();
+    }
+}
@@ -0,0 +1,296 @@
+package dk.easv.bll.bot;
+
+import dk.easv.bll.field.BitboardField;
+import dk.easv.bll.field.BoardMasks;
+import dk.easv.bll.game.GameManager;
+import dk.easv.bll.game.GameState;
+import dk.easv.bll.game.IGameState;
+import dk.easv.bll.game.Zobrist;
+import dk.easv.bll.move.IMove;
+import dk.easv.bll.move.Move;
+import dk.easv.bll.search.TranspositionTable;
+
+/**
+ * Plays late positions perfectly. Any bot can ask it first and think for
+ * itself only when it returns null:
+ * <pre>
+ * IMove move = solver.solve(state, state.getTimePerMove() / 2);
+ * if (move != null &amp;&amp; solver.getResult() != EndgameSolver.Result.Loss)
+ *     return move;
+ * </pre>
+ *
+ * Moves can only be played in microboards that are still open, so the game
+ * tree is small when they hold few empty cells. It has about
+ * (empty cells / open microboards) ^ empty cells positions, as that is the
+ * number of moves in the microboard a player is sent to, and a position is
+ * small if this is at most 2^maxSizeBits. Such positions are solved
+ * with alpha-beta search on win, tie and loss only, which cuts far more than
+ * a heuristic score. A position is a tie as soon as neither player can still
+ * get three microboards in a row. Solved positions are cached by Zobrist key
+ * and kept between moves, so the rest of a solved game costs almost nothing.
+ *
+ * Not thread safe; give every bot its own solver.
+ */
+public class EndgameSolver {
+
+    public enum Result {
+        Win,
+        Tie,
+        Loss,
+        Unknown
+    }
+
+    /**
+     * Solves e.g. 24 empty cells in 6 open microboards, which takes a few ms
+     * on average and rarely more than 300 ms
+     */
+    public static final int DEFAULT_MAX_SIZE_BITS = 48;
+
+    // Stop a bit before the time is up, to have time to return the move
+    private static final int SAFETY_MARGIN_MS = 50;
+    private static final int DEFAULT_CACHE_SIZE_BITS = 18; // 2^18 entries, 4 MB
+    private static final int[] LINES = BoardMasks.getWinLines();
+    private static final int MAX_PLY = 82;
+
+    private final int maxSizeBits;
+    private final int cacheSizeBits;
+    private final int[][] moves = new int[MAX_PLY][81];
+
+    // Created on the first solve, as every bot is instantiated when the bot list is loaded
+    private TranspositionTable cache;
+    private GameManager game;
+    private BitboardField field;
+    private long deadline;
+    private boolean stopped;
+    private long nodes;
+    private int rootMove;
+    private Result result = Result.Unknown;
+
+    public EndgameSolver() {
+        this(DEFAULT_MAX_SIZE_BITS, DEFAULT_CACHE_SIZE_BITS);
+    }
+
+    /**
+     * @param maxSizeBits Positions with game trees of more than about 2^maxSizeBits positions are not solved
+     * @param cacheSizeBits The cache holds 2^cacheSizeBits solved positions of 16 bytes
+     */
+    public EndgameSolver(int maxSizeBits, int cacheSizeBits) {
+        this.maxSizeBits = maxSizeBits;
+        this.cacheSizeBits = cacheSizeBits;
+    }
+
+    /**
+     * @param state The position
+     * @return true if the position is small enough to try to solve it
+     */
+    public boolean isSmall(IGameState state) {
+        return estimateSizeBits(toBitboard(state)) <= maxSizeBits;
+    }
+
+    /**
+     * Solves the position in the time per move of the state.
+     * @param state The position, with the player to move given by the move number
+     * @return The best move, or null if the position is too big or was not solved in time
+     */
+    public IMove solve(IGameState state) {
+        return solve(state, state.getTimePerMove() - SAFETY_MARGIN_MS);
+    }
+
+    /**
+     * @param state The position, with the player to move given by the move number
+     * @param timeMillis Time budget
+     * @return The best move, or null if the position is too big or was not solved in time
+     */
+    public IMove solve(IGameState state, long timeMillis) {
+        result = Result.Unknown;
+        nodes = 0;
+        if (!isSmall(state) || timeMillis <= 0)
+            return null;
+        setUp(state);
+        if (game.getGameOver() != GameManager.GameOverState.Active)
+            return null;
+        if (cache == null)
+            cache = new TranspositionTable(cacheSizeBits);
+
+        deadline = System.nanoTime() + timeMillis * 1_000_000;
+        stopped = false;
+        rootMove = TranspositionTable.NO_MOVE;
+        int score = solve(0, -1, 1);
+        if (stopped)
+            return null;
+
+        if (rootMove == TranspositionTable.NO_MOVE)
+            return null;
+        result = score > 0 ? Result.Win : score < 0 ? Result.Loss : Result.Tie;
+        return new Move(rootMove / 9, rootMove % 9);
+    }
+
+    /**
+     * @return The result of the move returned by the last solve with perfect play
+     * from both sides, for the player who makes it, or Unknown if it was not solved
+     */
+    public Result getResult() {
+        return result;
+    }
+
+    /**
+     * @return Number of positions visited by the last solve
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Forgets all solved positions.
+     */
+    public void clear() {
+        if (cache != null)
+            cache.clear();
+    }
+
+    private BitboardField toBitboard(IGameState state) {
+        if (state.getField() instanceof BitboardField)
+            return (BitboardField) state.getField();
+        BitboardField bitboard = new BitboardField();
+        bitboard.setBoard(state.getField().getBoard());
+        bitboard.setMacroboard(state.getField().getMacroboard());
+        return bitboard;
+    }
+
+    private void setUp(IGameState state) {
+        GameState copy = new GameState(new BitboardField(toBitboard(state)));
+        copy.setMoveNumber(state.getMoveNumber());
+        copy.setRoundNumber(state.getRoundNumber());
+        copy.setZobristKey(Zobrist.compute(copy));
+        game = new GameManager(copy);
+        game.setCurrentPlayer(state.getMoveNumber() % 2);
+        field = (BitboardField) copy.getField();
+    }
+
+    // log2 of (empty cells / open microboards) ^ empty cells, counting only the microboards not won or tied
+    private static double estimateSizeBits(BitboardField field) {
+        int decided = field.getWonMask(0) | field.getWonMask(1) | field.getTiedMask();
+        int empty = 0;
+        int open = 0;
+        for (int micro = 0; micro < 9; micro++) {
+            if ((decided & (1 << micro)) == 0) {
+                empty += 9 - Integer.bitCount(field.getCells(0, micro) | field.getCells(1, micro));
+                open++;
+            }
+        }
+        if (open == 0)
+            return 0;
+        return empty * Math.log((double) empty / open) / Math.log(2);
+    }
+
+    // 1 win, 0 tie, -1 loss for the player to move
+    private int solve(int ply, int alpha, int beta) {
+        if ((++nodes & 1023) == 0 && System.nanoTime() > deadline)
+            stopped = true;
+        if (stopped)
+            return 0;
+
+        GameManager.GameOverState gameOver = game.getGameOver();
+        if (gameOver == GameManager.GameOverState.Win)
+            return -1; // the player who just moved won
+        if (gameOver == GameManager.GameOverState.Tie)
+            return 0;
+
+        int player = game.getCurrentPlayer();
+        int lower = canStillWin(1 - player) ? -1 : 0;
+        int upper = canStillWin(player) ? 1 : 0;
+        if (lower >= beta)
+            return lower;
+        if (upper <= alpha)
+            return upper;
+        alpha = Math.max(alpha, lower);
+        beta = Math.min(beta, upper);
+
+        long key = game.getCurrentState().getZobristKey();
+        int cacheMove = TranspositionTable.NO_MOVE;
+        long entry = cache.probe(key);
+        if (entry != TranspositionTable.MISS) {
+            cacheMove = TranspositionTable.getMove(entry);
+            if (ply > 0) {
+                int score = TranspositionTable.getScore(entry);
+                int flag = TranspositionTable.getFlag(entry);
+                if (flag == TranspositionTable.EXACT)
+                    return score;
+                if (flag == TranspositionTable.LOWER_BOUND)
+                    alpha = Math.max(alpha, score);
+                else
+                    beta = Math.min(beta, score);
+                if (alpha >= beta)
+                    return score;
+            }
+        }
+
+        int[] plyMoves = moves[ply];
+        int count = orderMoves(plyMoves, cacheMove, player);
+        int alphaBefore = alpha;
+        int best = -2;
+        int bestMove = TranspositionTable.NO_MOVE;
+        for (int i = 0; i < count; i++) {
+            int move = plyMoves[i];
+            long undo = game.makeMove(move / 9, move % 9);
+            int score = -solve(ply + 1, -beta, -alpha);
+            game.unmakeMove(undo);
+            if (stopped)
+                return 0;
+            if (score > best) {
+                best = score;
+                bestMove = move;
+                if (score > alpha)
+                    alpha = score;
+            }
+            if (alpha >= beta)
+                break;
+        }
+
+        int flag = best <= alphaBefore ? TranspositionTable.UPPER_BOUND
+                : best >= beta ? TranspositionTable.LOWER_BOUND
+                : TranspositionTable.EXACT;
+        cache.store(key, best, 0, flag, bestMove);
+        if (ply == 0)
+            rootMove = bestMove;
+        return best;
+    }
+
+    // true if some line of microboards has none the opponent won and none tied
+    private boolean canStillWin(int player) {
+        int blocked = field.getWonMask(1 - player) | field.getTiedMask();
+        for (int line : LINES) {
+            if ((line & blocked) == 0)
+                return true;
+        }
+        return false;
+    }
+
+    // The cached move first, then moves that win a microboard, then the rest
+    private int orderMoves(int[] plyMoves, int cacheMove, int player) {
+        int count = field.getAvailableMoves(plyMoves);
+        int front = 0;
+        for (int i = 0; i < count; i++) {
+            int move = plyMoves[i];
+            if (move == cacheMove || winsMicroboard(move, player)) {
+                plyMoves[i] = plyMoves[front];
+                plyMoves[front++] = move;
+            }
+        }
+        for (int i = 1; i < front; i++) {
+            if (plyMoves[i] == cacheMove) {
+                plyMoves[i] = plyMoves[0];
+                plyMoves[0] = cacheMove;
+            }
+        }
+        return count;
+    }
+
+    private boolean winsMicroboard(int move, int player) {
+        int x = move / 9;
+        int y = move % 9;
+        int micro = (x / 3) * 3 + y / 3;
+        int bit = 1 << ((x % 3) * 3 + y % 3);
+        return BoardMasks.isWon(field.getCells(player, micro) | bit);
+    }
+}
@@ -0,0 +1,57 @@
+package dk.easv.bll.bot;
+
+import dk.easv.bll.game.IGameState;
+import dk.easv.bll.move.IMove;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A bot that answers with a future instead of blocking the caller, e.g. one
+ * that waits for a server or thinks on threads of its own. The game manager
+ * then needs no thread per game while the bot is busy, so many games can run
+ * on a small pool (see GameManager.playAsync).
+ *
+ * It is still an IBot: doMove waits for the future, so the bot can be used
+ * everywhere a normal bot can. Normal bots can be made asynchronous with
+ * SyncBotAdapter.
+ */
+public interface IAsyncBot extends IBot {
+
+    /**
+     * Starts thinking about a move and returns at once.
+     * @param state A copy of the position, the bot may keep it
+     * @param deadlineNanos System.nanoTime() by which the move should be made.
+     * A move made later counts as a timeout.
+     * @param cancellation Cancelled when the move is no longer wanted; the bot should stop thinking then
+     * @return Completes with the move, or exceptionally if the bot fails. After a
+     * cancellation it should complete too, in any way, once the bot has stopped:
+     * the bot is not asked for another move before.
+     */
+    CompletableFuture<IMove> doMoveAsync(IGameState state, long deadlineNanos, CancellationToken cancellation);
+
+    /**
+     * Waits for doMoveAsync, with the time per move of the state as the deadline.
+     */
+    @Override
+    default IMove doMove(IGameState state) {
+        long deadline = System.nanoTime() + state.getTimePerMove() * 1_000_000L;
+        CancellationToken cancellation = new CancellationToken();
+        CompletableFuture<IMove> move = doMoveAsync(state, deadline, cancellation);
+        try {
+            return move.get();
+        }
+        catch (InterruptedException ex) {
+            // The caller gave up on the move, e.g. on a timeout
+            cancellation.cancel();
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException)
+                throw (RuntimeException) ex.getCause();
+            throw new CompletionException(ex.getCause());
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package dk.easv.bll.bot;
+
+import dk.easv.bll.game.IGameState;
+
+/**
+ * A bot that thinks on the opponent's time ("pondering").
+ *
+ * After the bot has moved, the game manager calls startPonder on a
+ * background thread with the position the opponent has to answer. When the
+ * opponent has moved, it calls stopPonder with the new position, waits for
+ * startPonder to return and then asks the bot for its move as usual. A bot
+ * that keeps what it found, like the subtree of the move that was played,
+ * starts its turn with that much search already done.
+ */
+public interface IPonderBot extends IBot {
+
+    /**
+     * Thinks until stopPonder is called. Runs on a background thread, so it
+     * must not touch anything doMove uses at the same time.
+     * @param state A copy of the position with the opponent to move
+     */
+    void startPonder(IGameState state);
+
+    /**
+     * Makes startPonder return soon. It can be called just before startPonder
+     * gets going, which should then return at once.
+     * @param state A copy of the position after the opponent's move,
+     * the one the bot will be asked to move in
+     */
+    void stopPonder(IGameState state);
+}
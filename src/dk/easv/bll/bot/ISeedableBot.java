@@ -0,0 +1,20 @@
+package dk.easv.bll.bot;
+
+/**
+ * A bot whose random choices can be repeated.
+ *
+ * Before every game the game manager gives the bot a seed, when the game has
+ * one. A bot that draws all its random numbers from a generator made from
+ * that seed, and keeps nothing else from earlier games, plays the same game
+ * again for the same seed, which makes a single game of a long simulation
+ * repeatable for debugging and profiling. Bots that stop searching when the
+ * time is up can still play differently, as the time varies.
+ */
+public interface ISeedableBot extends IBot {
+
+    /**
+     * Called before the first move of a game.
+     * @param seed Seed for the random numbers of the game
+     */
+    void setSeed(long seed);
+}
@@ -2,6 +2,7 @@ package dk.easv.bll.bot;
 
 import dk.easv.bll.bot.IBot;
 import dk.easv.bll.field.IField;
+import dk.easv.bll.game.GameSimulator;
 import dk.easv.bll.game.IGameState;
 import dk.easv.bll.move.IMove;
 import dk.easv.bll.move.Move;
@@ -54,63 +55,6 @@ public class LocalPrioritisedListBot implements IBot {
         return state.getField().getAvailableMoves().get(0);
     }
 
-    private boolean isWinningMove(IGameState state, IMove move, String player) {
-        String[][] board = state.getField().getBoard();
-
-        boolean isRowWin = true;
-        //Row checking
-        int startX = move.getX() - (move.getX() % 3);
-        int endX = startX + 2;
-        for (int x = startX; x < endX; x++) {
-            if (x != move.getX())
-                if (!board[x][move.getY()].equals(player))
-                    isRowWin = false;
-        }
-
-
-        boolean isColumnWin = true;
-        //Column checking
-        int startY = move.getY() - (move.getY() % 3);
-        int endY = startY + 2;
-        for (int y = startY; y < endY; y++) {
-            if (y != move.getY())
-                if (!board[move.getX()][y].equals(player))
-                    isColumnWin = false;
-        }
-
-
-
-        boolean isDiagonalWin = true;
-
-        //Diagonal checking left-top to right-bottom
-        if (!(move.getX()==startX && move.getY()==startY))
-            if (!board[startX][startY].equals(player))
-                isDiagonalWin = false;
-        if (!(move.getX()==startX+1 && move.getY()==startY+1))
-            if (!board[startX + 1][startY + 1].equals(player))
-                isDiagonalWin = false;
-        if (!(move.getX()==startX+2 && move.getY()==startY+2))
-            if (!board[startX + 2][startY + 2].equals(player))
-                isDiagonalWin = false;
-
-
-
-        boolean isOppositeDiagonalWin = true;
-        //Diagonal checking left-bottom to right-top
-        if (!(move.getX()==startX && move.getY()==startY+2))
-            if (!board[startX][startY + 2].equals(player))
-                isOppositeDiagonalWin = false;
-        if (!(move.getX()==startX+1 && move.getY()==startY+1))
-            if (!board[startX + 1][startY + 1].equals(player))
-                isOppositeDiagonalWin = false;
-        if (!(move.getX()==startX+2 && move.getY()==startY))
-            if (!board[startX + 2][startY].equals(player))
-                isOppositeDiagonalWin = false;
-
-
-        return isColumnWin || isRowWin || isDiagonalWin || isOppositeDiagonalWin;
-    }
-
     //compile a list of all available winning moves
     private List<IMove> getWinningMoves(IGameState state) {
         String player = "1";
@@ -122,7 +66,7 @@ public class LocalPrioritisedListBot implements IBot {
 
         List<IMove> winningMoves = new ArrayList<>();
         for (IMove move : avail) {
-            if(isWinningMove(state, move, player))
+            if(GameSimulator.isWinningMove(state, move, player))
                 winningMoves.add(move);
 
             }
@@ -0,0 +1,111 @@
+package dk.easv.bll.bot;
+
+import dk.easv.bll.game.IGameState;
+import dk.easv.bll.move.IMove;
+import dk.easv.bll.move.Move;
+import dk.easv.bll.search.MctsTree;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Monte Carlo Tree Search, like the teacher bot on the server, but running locally.
+ *
+ * The tree is kept between moves: when it is our turn again, the part of the
+ * tree below the moves that were actually played is reused. While the
+ * opponent thinks it keeps searching (see IPonderBot), and when the opponent
+ * plays a move it has searched, that search counts for its own turn.
+ *
+ * Late in the game it first tries to solve the position with the
+ * EndgameSolver in half its time, as random playouts often miss a forced win.
+ */
+public class MctsBot implements IPonderBot, ISeedableBot {
+    private static final String BOTNAME = "MCTS bot";
+    private static final Logger LOGGER = Logger.getLogger(MctsBot.class.getName());
+    // Stop the search a bit before the time is up, to have time to return the move
+    private static final int SAFETY_MARGIN_MS = 50;
+    // At most about 60 MB for both node arrays, the tree only grows that big in long searches
+    private static final int TREE_CAPACITY = 1 << 21;
+
+    private final EndgameSolver solver = new EndgameSolver();
+    // Created on the first move, as every bot is instantiated when the bot list is loaded
+    private MctsTree tree;
+    private double iterationsPerSecond;
+    private volatile boolean ponderStopped;
+
+    @Override
+    public IMove doMove(IGameState state) {
+        if (tree == null)
+            tree = new MctsTree(TREE_CAPACITY, MctsTree.DEFAULT_EXPLORATION, System.nanoTime());
+
+        long start = System.nanoTime();
+        int budget = Math.max(1, state.getTimePerMove() - SAFETY_MARGIN_MS);
+        if (solver.isSmall(state)) {
+            IMove solved = solver.solve(state, budget / 2);
+            // In a lost position the search looks for the moves that are hardest to answer
+            if (solved != null && solver.getResult() != EndgameSolver.Result.Loss)
+                return solved;
+        }
+        boolean reused = tree.setRoot(state);
+        int reusedVisits = tree.getRootVisits();
+        long iterations = tree.search(start + budget * 1_000_000L);
+        long elapsed = System.nanoTime() - start;
+        iterationsPerSecond = iterations * 1e9 / elapsed;
+
+        LOGGER.log(Level.FINE, "{0} iterations/s, {1} nodes, reused {2} visits",
+                new Object[]{(long) iterationsPerSecond, tree.getSize(), reused ? reusedVisits : 0});
+
+        int best = tree.getBestMove();
+        // The move was given up on, and a bot busy past its time is replaced
+        // in simulations, so the tree is let go rather than kept until then
+        if (Thread.currentThread().isInterrupted())
+            tree = null;
+        if (best < 0)
+            return null;
+        return new Move(best / 9, best % 9);
+    }
+
+    /**
+     * Starts the game with an empty tree and solver cache, and playouts from the seed.
+     */
+    @Override
+    public void setSeed(long seed) {
+        if (tree == null)
+            tree = new MctsTree(TREE_CAPACITY, MctsTree.DEFAULT_EXPLORATION, seed);
+        else
+            tree.reset(seed);
+        solver.clear();
+    }
+
+    @Override
+    public void startPonder(IGameState state) {
+        if (tree == null)
+            tree = new MctsTree(TREE_CAPACITY, MctsTree.DEFAULT_EXPLORATION, System.nanoTime());
+        tree.setRoot(state);
+        long iterations = 0;
+        while (!ponderStopped) {
+            for (int i = 0; i < 64; i++)
+                tree.iterate();
+            iterations += 64;
+        }
+        ponderStopped = false;
+        LOGGER.log(Level.FINE, "Pondered {0} iterations", iterations);
+    }
+
+    @Override
+    public void stopPonder(IGameState state) {
+        ponderStopped = true;
+    }
+
+    /**
+     * @return Iterations per second of the last search
+     */
+    public double getIterationsPerSecond() {
+        return iterationsPerSecond;
+    }
+
+    @Override
+    public String getBotName() {
+        return BOTNAME;
+    }
+}
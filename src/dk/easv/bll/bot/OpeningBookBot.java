@@ -0,0 +1,88 @@
+package dk.easv.bll.bot;
+
+import dk.easv.bll.game.IGameState;
+import dk.easv.bll.move.IMove;
+import dk.easv.bll.move.Move;
+import dk.easv.bll.search.OpeningBook;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Plays the opening from an opening book and leaves the rest of the game to
+ * another bot, which then has its whole time for the middlegame.
+ *
+ * Without arguments it wraps an MctsBot and reads opening.book from the
+ * working folder; make one with OpeningBookGenerator in dk.easv.bll.search.
+ * To give your own bot a book, wrap it: {@code new OpeningBookBot(new MyBot(), book)}.
+ */
+public class OpeningBookBot implements ISeedableBot {
+    private static final Logger LOGGER = Logger.getLogger(OpeningBookBot.class.getName());
+
+    private final IBot bot;
+    private final Path bookFile;
+    // Read on the first move, as every bot is instantiated when the bot list is loaded
+    private OpeningBook book;
+
+    public OpeningBookBot() {
+        this(new MctsBot(), Paths.get(OpeningBook.DEFAULT_FILE));
+    }
+
+    /**
+     * @param bot Plays the moves that are not in the book
+     * @param book The book
+     */
+    public OpeningBookBot(IBot bot, OpeningBook book) {
+        this.bot = bot;
+        this.book = book;
+        this.bookFile = null;
+    }
+
+    /**
+     * @param bot Plays the moves that are not in the book
+     * @param bookFile The book, read on the first move. Without it the bot plays every move.
+     */
+    public OpeningBookBot(IBot bot, Path bookFile) {
+        this.bot = bot;
+        this.bookFile = bookFile;
+    }
+
+    @Override
+    public IMove doMove(IGameState state) {
+        if (book == null)
+            book = loadBook();
+        int move = book.getMove(state);
+        if (move != OpeningBook.NO_MOVE)
+            return new Move(move / 9, move % 9);
+        return bot.doMove(state);
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        if (bot instanceof ISeedableBot)
+            ((ISeedableBot) bot).setSeed(seed);
+    }
+
+    @Override
+    public String getBotName() {
+        return bot.getBotName() + " with book";
+    }
+
+    private OpeningBook loadBook() {
+        if (Files.exists(bookFile)) {
+            try {
+                return OpeningBook.load(bookFile);
+            } catch (IOException ex) {
+                LOGGER.log(Level.SEVERE, null, ex);
+            }
+        }
+        else {
+            LOGGER.log(Level.WARNING, "No opening book at {0}", bookFile.toAbsolutePath());
+        }
+        return new OpeningBook();
+    }
+}
@@ -0,0 +1,179 @@
+package dk.easv.bll.bot;
+
+import dk.easv.bll.game.IGameState;
+import dk.easv.bll.move.IMove;
+import dk.easv.bll.move.Move;
+import dk.easv.bll.search.MctsTree;
+import dk.easv.bll.search.SharedMctsTree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Monte Carlo Tree Search on several threads within the time of one move.
+ *
+ * ROOT: every thread searches its own tree, and the visits of the moves at
+ * the root are added up at the end. The trees are reused between moves.
+ * TREE: all threads search one shared tree with atomic counters and virtual loss.
+ */
+public class ParallelMctsBot implements ISeedableBot {
+
+    public enum Mode {
+        ROOT,
+        TREE
+    }
+
+    private static final String BOTNAME = "Parallel MCTS bot";
+    private static final Logger LOGGER = Logger.getLogger(ParallelMctsBot.class.getName());
+    // Stop the search a bit before the time is up, to have time to return the move
+    private static final int SAFETY_MARGIN_MS = 50;
+    private static final int TREE_CAPACITY = 1 << 21;
+    // Shared by all instances, so bots that are thrown away leave no threads
+    // behind; idle threads stop after a minute
+    private static final ExecutorService SEARCH_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "MCTS search");
+        thread.setDaemon(true); // don't keep the application alive
+        return thread;
+    });
+
+    private final Mode mode;
+    private final int threads;
+
+    // Created on the first move, as every bot is instantiated when the bot list is loaded
+    private MctsTree[] trees;
+    private SharedMctsTree sharedTree;
+    private SharedMctsTree.Worker[] workers;
+    private double iterationsPerSecond;
+
+    /**
+     * Searches one shared tree with a thread per core.
+     */
+    public ParallelMctsBot() {
+        this(Mode.TREE, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param mode ROOT for a tree per thread, TREE for one shared tree
+     * @param threads Number of search threads
+     */
+    public ParallelMctsBot(Mode mode, int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("At least one thread is needed");
+        this.mode = mode;
+        this.threads = threads;
+    }
+
+    @Override
+    public IMove doMove(IGameState state) {
+        if (trees == null && sharedTree == null)
+            init(System.nanoTime());
+
+        long start = System.nanoTime();
+        long deadline = start + Math.max(1, state.getTimePerMove() - SAFETY_MARGIN_MS) * 1_000_000L;
+        List<Callable<Long>> tasks = new ArrayList<>();
+        if (mode == Mode.ROOT) {
+            for (MctsTree tree : trees) {
+                tree.setRoot(state);
+                tasks.add(() -> tree.search(deadline));
+            }
+        }
+        else {
+            sharedTree.setRoot(state);
+            for (SharedMctsTree.Worker worker : workers)
+                tasks.add(() -> worker.search(deadline));
+        }
+
+        long iterations = 0;
+        try {
+            for (Future<Long> result : SEARCH_EXECUTOR.invokeAll(tasks))
+                iterations += result.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            LOGGER.log(Level.SEVERE, null, ex);
+        }
+        iterationsPerSecond = iterations * 1e9 / (System.nanoTime() - start);
+        LOGGER.log(Level.FINE, "{0} iterations/s on {1} threads ({2})",
+                new Object[]{(long) iterationsPerSecond, threads, mode});
+
+        int best = mode == Mode.ROOT ? mergedBestMove() : sharedTree.getBestMove();
+        if (best < 0)
+            return null;
+        return new Move(best / 9, best % 9);
+    }
+
+    /**
+     * Starts the game with empty trees, and playouts from the seed. With more
+     * than one thread the threads' timing still changes the search.
+     */
+    @Override
+    public void setSeed(long seed) {
+        if (trees == null && sharedTree == null)
+            init(seed);
+        else if (mode == Mode.ROOT) {
+            for (int i = 0; i < threads; i++)
+                trees[i].reset(seed + i);
+        }
+        else {
+            for (int i = 0; i < threads; i++)
+                workers[i] = sharedTree.newWorker(seed + i);
+        }
+    }
+
+    /**
+     * @return Iterations per second of the last search, over all threads
+     */
+    public double getIterationsPerSecond() {
+        return iterationsPerSecond;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    @Override
+    public String getBotName() {
+        return BOTNAME;
+    }
+
+    private void init(long seed) {
+        if (mode == Mode.ROOT) {
+            trees = new MctsTree[threads];
+            for (int i = 0; i < threads; i++)
+                trees[i] = new MctsTree(TREE_CAPACITY / threads, MctsTree.DEFAULT_EXPLORATION, seed + i);
+        }
+        else {
+            sharedTree = new SharedMctsTree(TREE_CAPACITY, MctsTree.DEFAULT_EXPLORATION);
+            workers = new SharedMctsTree.Worker[threads];
+            for (int i = 0; i < threads; i++)
+                workers[i] = sharedTree.newWorker(seed + i);
+        }
+    }
+
+    // Adds up the visits of every root move over the trees
+    private int mergedBestMove() {
+        int best = -1;
+        long bestVisits = 0;
+        for (int move = 0; move < 81; move++) {
+            long visits = 0;
+            for (MctsTree tree : trees)
+                visits += tree.getVisits(move);
+            if (visits > bestVisits) {
+                bestVisits = visits;
+                best = move;
+            }
+        }
+        return best;
+    }
+}
@@ -3,14 +3,15 @@ package dk.easv.bll.bot;
 import dk.easv.bll.bot.IBot;
 import dk.easv.bll.game.IGameState;
 import dk.easv.bll.move.IMove;
+import dk.easv.bll.move.Move;
 
-import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 
-public class RandomBot implements IBot {
+public class RandomBot implements ISeedableBot {
 
     private static final String BOTNAME = "Random Dude";
-    private Random rand = new Random();
+    private SplittableRandom rand = new SplittableRandom();
+    private final int[] moves = new int[81];
 
     /**
      * Makes a turn. Edit this method to make your bot smarter.
@@ -20,14 +21,20 @@ public class RandomBot implements IBot {
      */
     @Override
     public IMove doMove(IGameState state) {
-        List<IMove> moves = state.getField().getAvailableMoves();
-        if (moves.size() > 0) {
-            return moves.get(rand.nextInt(moves.size())); /* get random move from available moves */
+        int count = state.getField().getAvailableMoves(moves); /* cells encoded as x * 9 + y */
+        if (count > 0) {
+            int move = moves[rand.nextInt(count)]; /* get random move from available moves */
+            return new Move(move / 9, move % 9);
         }
 
         return null;
     }
 
+    @Override
+    public void setSeed(long seed) {
+        rand = new SplittableRandom(seed);
+    }
+
     @Override
     public String getBotName() {
         return BOTNAME;
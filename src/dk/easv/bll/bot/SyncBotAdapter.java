@@ -0,0 +1,75 @@
+package dk.easv.bll.bot;
+
+import dk.easv.bll.game.IGameState;
+import dk.easv.bll.move.IMove;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Makes a normal bot asynchronous by running its doMove on a pool.
+ *
+ * The bot still holds a pool thread while it thinks, so a pool of n threads
+ * plays n moves at a time. Cancelling interrupts the thread, which only stops
+ * bots that check for it; the future completes when doMove has returned.
+ *
+ * The game manager adapts normal bots by itself, so give it the bot and not
+ * the adapter: it would not see that the bot ponders or takes seeds.
+ */
+public class SyncBotAdapter implements IAsyncBot {
+
+    private final IBot bot;
+    private final ExecutorService executor;
+
+    /**
+     * @param bot The bot
+     * @param executor The pool its moves run on
+     */
+    public SyncBotAdapter(IBot bot, ExecutorService executor) {
+        this.bot = bot;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<IMove> doMoveAsync(IGameState state, long deadlineNanos, CancellationToken cancellation) {
+        CompletableFuture<IMove> move = new CompletableFuture<>();
+        // Whoever comes first, the move or the cancellation, decides if the bot runs
+        AtomicBoolean started = new AtomicBoolean();
+        Future<?> task = executor.submit(() -> {
+            if (started.getAndSet(true))
+                return; // cancelled before it started
+            try {
+                move.complete(bot.doMove(state));
+            }
+            catch (RuntimeException | Error ex) {
+                move.completeExceptionally(ex);
+            }
+        });
+        cancellation.onCancel(() -> {
+            if (!started.getAndSet(true))
+                move.cancel(false);
+            else
+                task.cancel(true);
+        });
+        return move;
+    }
+
+    /**
+     * @return The bot that makes the moves
+     */
+    public IBot getBot() {
+        return bot;
+    }
+
+    @Override
+    public IMove doMove(IGameState state) {
+        return bot.doMove(state);
+    }
+
+    @Override
+    public String getBotName() {
+        return bot.getBotName();
+    }
+}
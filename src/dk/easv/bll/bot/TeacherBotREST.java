@@ -1,14 +1,16 @@
 package dk.easv.bll.bot;
 
 import com.google.gson.Gson;
+import dk.easv.bll.field.Field;
+import dk.easv.bll.game.GameState;
 import dk.easv.bll.game.IGameState;
 import dk.easv.bll.move.IMove;
 import dk.easv.bll.move.Move;
 
-import java.io.IOException;
 import java.net.URI;
 import java.net.http.*;
 import java.net.http.HttpResponse.BodyHandlers;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * This bot just acts as a REST client application that communicates with a REST api in the
@@ -20,15 +22,24 @@ import java.net.http.HttpResponse.BodyHandlers;
  * This client implementation requires the Google GSon library.
  *
  */
-public class TeacherBotREST implements IBot{
+public class TeacherBotREST implements IAsyncBot{
     private static final String BOT_NAME = "Teacher Bot (online)";
     // This bot requires a VPN connection to the EASV network
     private static final String SERVER_URI = "http://10.176.88.51:4567/doMove";
+    // One client for all requests, it keeps the connection open between moves
+    private static final HttpClient CLIENT = HttpClient.newHttpClient();
+
+    /**
+     * Sends the state to the server and returns without waiting for the answer,
+     * so no thread is blocked while the server thinks.
+     */
     @Override
-    public IMove doMove(IGameState state) {
+    public CompletableFuture<IMove> doMoveAsync(IGameState state, long deadlineNanos, CancellationToken cancellation) {
         Gson gson = new Gson();
-        String jsonState = gson.toJson(state);
+        String jsonState = gson.toJson(toRestState(state));
 
+        // No timeout of its own: the game decides when the answer is too late,
+        // with its grace period and timeout policy, and cancels the request then
         HttpRequest request =
                 HttpRequest.newBuilder(URI.create(SERVER_URI))
                 .header("Accept", "application/json")
@@ -36,23 +47,28 @@ public class TeacherBotREST implements IBot{
                 .PUT(HttpRequest.BodyPublishers.ofString(jsonState))
                 .build();
 
-        var client = HttpClient.newHttpClient();
-        HttpResponse<String> response = null;
-        try {
-            response = client.send(request, BodyHandlers.ofString());
+        CompletableFuture<HttpResponse<String>> response = CLIENT.sendAsync(request, BodyHandlers.ofString());
+        cancellation.onCancel(() -> response.cancel(true));
 
         // This is not the most graceful exception handling, but we want the bot to die
         // if the connection fails. Normally we could retry, however that would violate
         // the max allowed time for the bot to think.
-        } catch (IOException e) {
-            throw new RuntimeException("Connection problems with "+ BOT_NAME,e);
-
-        } catch (InterruptedException e) {
-            throw new RuntimeException("Connection problems with "+ BOT_NAME,e);
-        }
+        return response.handle((answer, ex) -> {
+            if (ex != null)
+                throw new RuntimeException("Connection problems with " + BOT_NAME, ex);
+            return gson.fromJson(answer.body(), Move.class);
+        });
+    }
 
-        Move move = gson.fromJson(response.body(), Move.class);
-        return move;
+    // The server expects the String arrays of Field, whatever field the game runs on
+    private GameState toRestState(IGameState state) {
+        GameState restState = new GameState(new Field());
+        restState.getField().setBoard(state.getField().getBoard());
+        restState.getField().setMacroboard(state.getField().getMacroboard());
+        restState.setMoveNumber(state.getMoveNumber());
+        restState.setRoundNumber(state.getRoundNumber());
+        restState.setTimePerMove(state.getTimePerMove());
+        return restState;
     }
 
     @Override
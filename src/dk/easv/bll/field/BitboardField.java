@@ -0,0 +1,419 @@
+package dk.easv.bll.field;
+
+import dk.easv.bll.move.IMove;
+import dk.easv.bll.move.Move;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An IField that keeps the board in primitive bit masks instead of String arrays.
+ *
+ * Every microboard is stored as one 9-bit mask per player, and the macroboard as
+ * 9-bit masks for boards won by each player, tied boards and boards that are
+ * currently available for play. Bit {@code (x%3)*3 + y%3} of microboard
+ * {@code (x/3)*3 + y/3} is the cell at column x and row y.
+ *
+ * The String[][] views returned by {@link #getBoard()} and {@link #getMacroboard()}
+ * are only created when somebody asks for them. Once handed out they are kept in
+ * sync with the masks, which stay the source of truth. Writes made to the views
+ * by the caller are picked up at sync points only: {@link #syncFromViews()}, the
+ * copy constructor and copyFrom, and GameManager when it is given a move. So
+ * handing out the views costs nothing on later operations, and code that only
+ * uses {@link #play(int, int, int)} and the mask getters never touches a String.
+ */
+public class BitboardField implements IField {
+
+    public static final String TIE_FIELD = "TIE";
+
+    /** Results of {@link #play(int, int, int)}, in the same order as GameManager.GameOverState */
+    public static final int RESULT_ACTIVE = 0;
+    public static final int RESULT_WIN = 1;
+    public static final int RESULT_TIE = 2;
+
+    private static final String[] PLAYER_IDS = {"0", "1"};
+
+    // Microboard and cell bit of every position x * 9 + y
+    private static final int[] MICRO_OF = new int[81];
+    private static final int[] CELL_OF = new int[81];
+    // Position x * 9 + y of every microboard and cell bit, micro * 9 + cell
+    private static final int[] POSITION_OF = new int[81];
+
+    static {
+        for (int x = 0; x < 9; x++)
+            for (int y = 0; y < 9; y++) {
+                MICRO_OF[x * 9 + y] = (x / 3) * 3 + y / 3;
+                CELL_OF[x * 9 + y] = (x % 3) * 3 + y % 3;
+                POSITION_OF[MICRO_OF[x * 9 + y] * 9 + CELL_OF[x * 9 + y]] = x * 9 + y;
+            }
+    }
+
+    // cells[player * 9 + microboard] holds the 9-bit occupancy of that player
+    private final int[] cells = new int[18];
+    private int won0;
+    private int won1;
+    private int tied;
+    private int active;
+
+    private String[][] boardView;
+    private String[][] macroView;
+
+    public BitboardField() {
+        clearBoard();
+    }
+
+    public BitboardField(BitboardField other) {
+        copyFrom(other);
+    }
+
+    /**
+     * Copies the complete position of another bitboard field into this one
+     * without allocating.
+     * @param other the field to copy
+     */
+    public void copyFrom(BitboardField other) {
+        other.syncFromViews();
+        System.arraycopy(other.cells, 0, cells, 0, cells.length);
+        won0 = other.won0;
+        won1 = other.won1;
+        tied = other.tied;
+        active = other.active;
+        pushBoardView();
+        pushMacroView();
+    }
+
+    @Override
+    public void clearBoard() {
+        for (int i = 0; i < cells.length; i++)
+            cells[i] = 0;
+        won0 = 0;
+        won1 = 0;
+        tied = 0;
+        active = BoardMasks.FULL;
+        // Like Field, clearing replaces the board array and refills the macroboard
+        boardView = null;
+        pushMacroView();
+    }
+
+    /**
+     * Places a marker for the player and applies the game rules: decides the
+     * microboard if it was won or filled, and sets the next active microboards.
+     * The move is expected to be legal.
+     * @param x Column
+     * @param y Row
+     * @param player 0 or 1
+     * @return RESULT_WIN if the player won the game, RESULT_TIE if the game is tied,
+     * otherwise RESULT_ACTIVE.
+     */
+    public int play(int x, int y, int player) {
+        int micro = MICRO_OF[x * 9 + y];
+        int cell = CELL_OF[x * 9 + y];
+        int microBit = 1 << micro;
+        int mine = cells[player * 9 + micro] |= 1 << cell;
+        int result = RESULT_ACTIVE;
+
+        if (((won0 | won1 | tied) & microBit) == 0) {
+            if (BoardMasks.isWon(mine)) {
+                int won = player == 0 ? (won0 |= microBit) : (won1 |= microBit);
+                if (BoardMasks.isWon(won))
+                    result = RESULT_WIN;
+            }
+            else if ((mine | cells[(1 - player) * 9 + micro]) == BoardMasks.FULL)
+                tied |= microBit;
+
+            if (result == RESULT_ACTIVE && (won0 | won1 | tied) == BoardMasks.FULL)
+                result = RESULT_TIE;
+        }
+
+        int decided = won0 | won1 | tied;
+        int next = 1 << cell;
+        active = (decided & next) == 0 ? next : BoardMasks.FULL & ~decided;
+
+        if (boardView != null)
+            boardView[x][y] = PLAYER_IDS[player];
+        pushMacroView();
+        return result;
+    }
+
+    /**
+     * Takes back a move made with play: empties the cell and puts back the
+     * macroboard masks as they were before the move.
+     * @param x Column
+     * @param y Row
+     * @param active Active mask before the move
+     * @param won0 Won mask of player 0 before the move
+     * @param won1 Won mask of player 1 before the move
+     * @param tied Tied mask before the move
+     */
+    public void undo(int x, int y, int active, int won0, int won1, int tied) {
+        int micro = (x / 3) * 3 + y / 3;
+        int bit = 1 << ((x % 3) * 3 + y % 3);
+        cells[micro] &= ~bit;
+        cells[9 + micro] &= ~bit;
+        this.active = active;
+        this.won0 = won0;
+        this.won1 = won1;
+        this.tied = tied;
+
+        if (boardView != null)
+            boardView[x][y] = EMPTY_FIELD;
+        pushMacroView();
+    }
+
+    /**
+     * @return true when the cell is on the board, empty and in an active microboard
+     */
+    public boolean isLegal(int x, int y) {
+        if (x < 0 || 9 <= x || y < 0 || 9 <= y)
+            return false;
+        int micro = (x / 3) * 3 + y / 3;
+        int bit = 1 << ((x % 3) * 3 + y % 3);
+        return (active & (1 << micro)) != 0 && ((cells[micro] | cells[9 + micro]) & bit) == 0;
+    }
+
+    /**
+     * @return 0 or 1 for the player occupying the cell, -1 when it is empty
+     */
+    public int getOwner(int x, int y) {
+        int micro = (x / 3) * 3 + y / 3;
+        int bit = 1 << ((x % 3) * 3 + y % 3);
+        if ((cells[micro] & bit) != 0)
+            return 0;
+        if ((cells[9 + micro] & bit) != 0)
+            return 1;
+        return -1;
+    }
+
+    /**
+     * @return the 9-bit occupancy of the player in the given microboard (0-8)
+     */
+    public int getCells(int player, int micro) {
+        return cells[player * 9 + micro];
+    }
+
+    /**
+     * @return 9-bit mask of microboards won by the player
+     */
+    public int getWonMask(int player) {
+        return player == 0 ? won0 : won1;
+    }
+
+    /**
+     * @return 9-bit mask of tied microboards
+     */
+    public int getTiedMask() {
+        return tied;
+    }
+
+    /**
+     * @return 9-bit mask of microboards that are currently available for play
+     */
+    public int getActiveMask() {
+        return active;
+    }
+
+    @Override
+    public List<IMove> getAvailableMoves() {
+        List<IMove> availMoves = new ArrayList<>();
+        // Same x-then-y order as Field
+        for (int x = 0; x < 9; x++) {
+            for (int y = 0; y < 9; y++) {
+                int micro = (x / 3) * 3 + y / 3;
+                if ((active & (1 << micro)) == 0)
+                    continue;
+                int bit = 1 << ((x % 3) * 3 + y % 3);
+                if (((cells[micro] | cells[9 + micro]) & bit) == 0)
+                    availMoves.add(new Move(x, y));
+            }
+        }
+        return availMoves;
+    }
+
+    @Override
+    public int getAvailableMoveCount() {
+        int count = 0;
+        for (int micro = 0; micro < 9; micro++) {
+            if ((active & (1 << micro)) != 0)
+                count += 9 - Integer.bitCount(cells[micro] | cells[9 + micro]);
+        }
+        return count;
+    }
+
+    @Override
+    public int getAvailableMoves(int[] buffer) {
+        int count = 0;
+        int boards = active;
+        while (boards != 0) {
+            int micro = Integer.numberOfTrailingZeros(boards);
+            boards &= boards - 1;
+            int empty = BoardMasks.FULL & ~(cells[micro] | cells[9 + micro]);
+            while (empty != 0) {
+                int cell = Integer.numberOfTrailingZeros(empty);
+                empty &= empty - 1;
+                buffer[count++] = POSITION_OF[micro * 9 + cell];
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void setPlayerId(int column, int row, String playerId) {
+        int micro = (column / 3) * 3 + row / 3;
+        int bit = 1 << ((column % 3) * 3 + row % 3);
+        cells[micro] &= ~bit;
+        cells[9 + micro] &= ~bit;
+        if (PLAYER_IDS[0].equals(playerId))
+            cells[micro] |= bit;
+        else if (PLAYER_IDS[1].equals(playerId))
+            cells[9 + micro] |= bit;
+        if (boardView != null)
+            boardView[column][row] = playerId;
+    }
+
+    @Override
+    public String getPlayerId(int column, int row) {
+        int owner = getOwner(column, row);
+        return owner < 0 ? EMPTY_FIELD : PLAYER_IDS[owner];
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (int mask : cells) {
+            if (mask != 0)
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isFull() {
+        for (int micro = 0; micro < 9; micro++) {
+            if ((cells[micro] | cells[9 + micro]) != BoardMasks.FULL)
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public Boolean isInActiveMicroboard(int x, int y) {
+        int xTrans = x > 0 ? x / 3 : 0;
+        int yTrans = y > 0 ? y / 3 : 0;
+        return (active & (1 << (xTrans * 3 + yTrans))) != 0;
+    }
+
+    @Override
+    public String[][] getBoard() {
+        if (boardView == null) {
+            boardView = new String[9][9];
+            pushBoardView();
+        }
+        return boardView;
+    }
+
+    @Override
+    public String[][] getMacroboard() {
+        if (macroView == null) {
+            macroView = new String[3][3];
+            pushMacroView();
+        }
+        return macroView;
+    }
+
+    @Override
+    public void setBoard(String[][] board) {
+        readBoard(board);
+        pushBoardView();
+    }
+
+    @Override
+    public void setMacroboard(String[][] macroboard) {
+        readMacroboard(macroboard);
+        pushMacroView();
+    }
+
+    /**
+     * Picks up writes callers may have made to the arrays returned by
+     * getBoard and getMacroboard. Not needed after setBoard, setMacroboard or
+     * setPlayerId, or when the arrays are only read.
+     */
+    public void syncFromViews() {
+        if (boardView != null)
+            readBoard(boardView);
+        if (macroView != null)
+            readMacroboard(macroView);
+    }
+
+    private void readBoard(String[][] board) {
+        for (int i = 0; i < cells.length; i++)
+            cells[i] = 0;
+        for (int x = 0; x < 9; x++) {
+            for (int y = 0; y < 9; y++) {
+                String value = board[x][y];
+                int micro = (x / 3) * 3 + y / 3;
+                int bit = 1 << ((x % 3) * 3 + y % 3);
+                if (PLAYER_IDS[0].equals(value))
+                    cells[micro] |= bit;
+                else if (PLAYER_IDS[1].equals(value))
+                    cells[9 + micro] |= bit;
+            }
+        }
+    }
+
+    private void readMacroboard(String[][] macroboard) {
+        won0 = 0;
+        won1 = 0;
+        tied = 0;
+        active = 0;
+        for (int x = 0; x < 3; x++) {
+            for (int y = 0; y < 3; y++) {
+                String value = macroboard[x][y];
+                int bit = 1 << (x * 3 + y);
+                if (PLAYER_IDS[0].equals(value))
+                    won0 |= bit;
+                else if (PLAYER_IDS[1].equals(value))
+                    won1 |= bit;
+                else if (TIE_FIELD.equals(value))
+                    tied |= bit;
+                else if (AVAILABLE_FIELD.equals(value))
+                    active |= bit;
+            }
+        }
+    }
+
+    private void pushBoardView() {
+        if (boardView == null)
+            return;
+        for (int x = 0; x < 9; x++) {
+            for (int y = 0; y < 9; y++) {
+                int micro = (x / 3) * 3 + y / 3;
+                int bit = 1 << ((x % 3) * 3 + y % 3);
+                if ((cells[micro] & bit) != 0)
+                    boardView[x][y] = PLAYER_IDS[0];
+                else if ((cells[9 + micro] & bit) != 0)
+                    boardView[x][y] = PLAYER_IDS[1];
+                else
+                    boardView[x][y] = EMPTY_FIELD;
+            }
+        }
+    }
+
+    private void pushMacroView() {
+        if (macroView == null)
+            return;
+        for (int x = 0; x < 3; x++) {
+            for (int y = 0; y < 3; y++) {
+                int bit = 1 << (x * 3 + y);
+                if ((won0 & bit) != 0)
+                    macroView[x][y] = PLAYER_IDS[0];
+                else if ((won1 & bit) != 0)
+                    macroView[x][y] = PLAYER_IDS[1];
+                else if ((tied & bit) != 0)
+                    macroView[x][y] = TIE_FIELD;
+                else if ((active & bit) != 0)
+                    macroView[x][y] = AVAILABLE_FIELD;
+                else
+                    macroView[x][y] = EMPTY_FIELD;
+            }
+        }
+    }
+}
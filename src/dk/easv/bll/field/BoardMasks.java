@@ -0,0 +1,84 @@
+package dk.easv.bll.field;
+
+/**
+ * Lookup tables for 3x3 boards encoded as 9-bit masks, where bit
+ * {@code x * 3 + y} is the cell at column x and row y. The same encoding is
+ * used for a microboard (local coordinates) and for the macroboard.
+ */
+public class BoardMasks {
+
+    /** All nine cells set */
+    public static final int FULL = 0x1FF;
+
+    // Rows, columns and both diagonals
+    private static final int[] WIN_LINES = {
+            0x007, 0x038, 0x1C0,
+            0x049, 0x092, 0x124,
+            0x111, 0x054};
+
+    private static final boolean[] WON = new boolean[512];
+    // Per cell: won by a line through that cell
+    private static final boolean[][] WON_THROUGH = new boolean[9][512];
+
+    static {
+        for (int mask = 0; mask < WON.length; mask++) {
+            for (int line : WIN_LINES) {
+                if ((mask & line) == line) {
+                    WON[mask] = true;
+                    for (int bit = 0; bit < 9; bit++)
+                        if ((line & (1 << bit)) != 0)
+                            WON_THROUGH[bit][mask] = true;
+                }
+            }
+        }
+    }
+
+    private BoardMasks() {
+    }
+
+    /**
+     * @return A copy of the 8 lines (rows, columns and diagonals) as 9-bit masks
+     */
+    public static int[] getWinLines() {
+        return WIN_LINES.clone();
+    }
+
+    /**
+     * @param mask The cells of one player
+     * @return true when the cells contain a row, column or diagonal
+     */
+    public static boolean isWon(int mask) {
+        return WON[mask];
+    }
+
+    /**
+     * @param mask The cells of one player
+     * @param bit The cell, x * 3 + y
+     * @return true when the cells contain a row, column or diagonal through that cell
+     */
+    public static boolean isWonThrough(int mask, int bit) {
+        return WON_THROUGH[bit][mask];
+    }
+
+    /**
+     * @param macroboard A macroboard of String ids
+     * @return The 9-bit mask of microboards available for play, bit x * 3 + y
+     */
+    public static int activeMask(String[][] macroboard) {
+        int active = 0;
+        for (int i = 0; i < 3; i++)
+            for (int k = 0; k < 3; k++) {
+                if (macroboard[i][k].equals(IField.AVAILABLE_FIELD))
+                    active |= 1 << (i * 3 + k);
+            }
+        return active;
+    }
+
+    /**
+     * @param mask The occupied (or decided) cells
+     * @return true when no cell is left
+     */
+    public static boolean isFull(int mask) {
+        return mask == FULL;
+    }
+}
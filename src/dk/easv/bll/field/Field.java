@@ -11,13 +11,29 @@ public class Field implements IField{
     volatile String[][] board = new String[9][9];
     volatile String[][] macroBoard = new String[3][3];
 
+    // Empty cells of each microboard (x/3*3 + y/3) as 9-bit masks, bit (x%3)*3 + y%3
+    private final int[] emptyMasks = new int[9];
+    // Once the board array is handed out, callers may write to it directly and
+    // the masks can't be trusted until syncFromBoard is called
+    private boolean boardShared = false;
+
     public Field() {
         clearBoard();
     }
 
+    /**
+     * Copies another field without handing out its board array.
+     * @param field The field to copy
+     */
+    public Field(Field field) {
+        setMacroboard(field.macroBoard);
+        setBoard(field.board);
+    }
+
     @Override
     public void clearBoard() {
         board = new String[9][9];
+        boardShared = false;
         for (int i = 0; i < board.length; i++)
             for (int k = 0; k < board[i].length; k++) {
                 board[i][k] = EMPTY_FIELD;
@@ -26,27 +42,117 @@ public class Field implements IField{
             for (int k = 0; k < macroBoard[i].length; k++) {
                 macroBoard[i][k] = AVAILABLE_FIELD;
             }
+        for (int i = 0; i < emptyMasks.length; i++)
+            emptyMasks[i] = 0x1FF;
     }
 
     @Override
     public List<IMove> getAvailableMoves() {
         List<IMove> availMoves = new ArrayList<>();
 
-        for (int i = 0; i < board.length; i++)
-            for (int k = 0; k < board[i].length; k++) {
-                if(isInActiveMicroboard(i,k) && board[i][k].equals(EMPTY_FIELD)) {
-                    availMoves.add(new Move(i,k));
-                }
+        if (boardShared) {
+            for (int i = 0; i < board.length; i++)
+                for (int k = 0; k < board[i].length; k++) {
+                    if(isInActiveMicroboard(i,k) && board[i][k].equals(EMPTY_FIELD)) {
+                        availMoves.add(new Move(i,k));
+                    }
+            }
+            return availMoves;
         }
 
+        // Only the active microboards are visited, still in x-then-y order
+        int active = getActiveMask();
+        for (int macroX = 0; macroX < 3; macroX++) {
+            if ((active & (7 << (macroX * 3))) == 0)
+                continue;
+            for (int localX = 0; localX < 3; localX++)
+                for (int macroY = 0; macroY < 3; macroY++) {
+                    int micro = macroX * 3 + macroY;
+                    if ((active & (1 << micro)) == 0)
+                        continue;
+                    for (int localY = 0; localY < 3; localY++) {
+                        if ((emptyMasks[micro] & (1 << (localX * 3 + localY))) != 0)
+                            availMoves.add(new Move(macroX * 3 + localX, macroY * 3 + localY));
+                    }
+                }
+        }
         return availMoves;
     }
 
+    @Override
+    public int getAvailableMoveCount() {
+        if (boardShared)
+            return IField.super.getAvailableMoveCount();
+        int active = getActiveMask();
+        int count = 0;
+        for (int micro = 0; micro < 9; micro++) {
+            if ((active & (1 << micro)) != 0)
+                count += Integer.bitCount(emptyMasks[micro]);
+        }
+        return count;
+    }
+
+    @Override
+    public int getAvailableMoves(int[] buffer) {
+        if (boardShared)
+            return IField.super.getAvailableMoves(buffer);
+        int active = getActiveMask();
+        int count = 0;
+        for (int micro = 0; micro < 9; micro++) {
+            if ((active & (1 << micro)) == 0)
+                continue;
+            int empty = emptyMasks[micro];
+            while (empty != 0) {
+                int cell = Integer.numberOfTrailingZeros(empty);
+                empty &= empty - 1;
+                int x = (micro / 3) * 3 + cell / 3;
+                int y = (micro % 3) * 3 + cell % 3;
+                buffer[count++] = x * 9 + y;
+            }
+        }
+        return count;
+    }
+
+    // The macroboard is only 9 cells, so the active mask is read straight from it
+    private int getActiveMask() {
+        return BoardMasks.activeMask(macroBoard);
+    }
+
+    /**
+     * Picks up writes callers may have made to the array returned by getBoard,
+     * so the empty cells are counted from the masks again instead of the
+     * strings. GameManager calls it when it is given a move; writes made to
+     * the array later are only seen by the next call.
+     */
+    public void syncFromBoard() {
+        if (!boardShared)
+            return;
+        for (int i = 0; i < emptyMasks.length; i++)
+            emptyMasks[i] = 0;
+        for (int x = 0; x < 9; x++)
+            for (int y = 0; y < 9; y++) {
+                if (EMPTY_FIELD.equals(board[x][y]))
+                    emptyMasks[(x / 3) * 3 + y / 3] |= 1 << ((x % 3) * 3 + y % 3);
+            }
+        boardShared = false;
+    }
+
     @Override
     public String getPlayerId(int column, int row) {
         return board[column][row];
     }
 
+    @Override
+    public void setPlayerId(int column, int row, String playerId) {
+        board[column][row] = playerId;
+        int micro = (column / 3) * 3 + row / 3;
+        int bit = 1 << ((column % 3) * 3 + row % 3);
+        if (EMPTY_FIELD.equals(playerId))
+            emptyMasks[micro] |= bit;
+        else
+            emptyMasks[micro] &= ~bit;
+    }
+
     @Override
     public boolean isEmpty() {
         for (int i = 0; i < board.length; i++)
@@ -77,6 +183,7 @@ public class Field implements IField{
 
     @Override
     public String[][] getBoard() {
+        boardShared = true;
         return board;
     }
 
@@ -91,7 +198,7 @@ public class Field implements IField{
         //NOTE: Cloning here, for simulation purposes
         for (int i = 0; i < 9; i++) {
             for (int j = 0; j < 9; j++) {
-                this.board[i][j] = board[i][j];
+                setPlayerId(i, j, board[i][j]);
             }
         }
     }
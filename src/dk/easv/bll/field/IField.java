@@ -24,6 +24,28 @@ public interface IField {
      */
     List<IMove> getAvailableMoves();
 
+    /**
+     * Counts the available moves without building a list.
+     * @return Number of currently available moves
+     */
+    default int getAvailableMoveCount() {
+        return getAvailableMoves().size();
+    }
+
+    /**
+     * Allocation-free version of getAvailableMoves. Writes every available move
+     * into the buffer encoded as x * 9 + y.
+     * @param buffer Array with room for at least 81 moves
+     * @return Number of moves written to the buffer
+     */
+    default int getAvailableMoves(int[] buffer) {
+        int count = 0;
+        for (IMove move : getAvailableMoves()) {
+            buffer[count++] = move.getX() * 9 + move.getY();
+        }
+        return count;
+    }
+
     /**
      * Returns the player id on given column and row
      * @param column Column
@@ -32,6 +54,16 @@ public interface IField {
      */
     String getPlayerId(int column, int row);
 
+    /**
+     * Sets the player id on given column and row, without applying any game rules.
+     * @param column Column
+     * @param row Row
+     * @param playerId Player id, or EMPTY_FIELD to clear the position
+     */
+    default void setPlayerId(int column, int row, String playerId) {
+        getBoard()[column][row] = playerId;
+    }
+
     boolean isEmpty();
 
     /**
@@ -0,0 +1,171 @@
+package dk.easv.bll.field;
+
+import java.util.Arrays;
+
+/**
+ * Everything about a single 3x3 board, looked up instead of computed: the
+ * value with perfect play, the open lines, the cells that win at once and
+ * the best moves.
+ *
+ * A board has 3^9 = 19683 states. They are numbered in base 3 from the point
+ * of view of one player: digit x * 3 + y is 0 for an empty cell, 1 for the
+ * player's own cell and 2 for the opponent's. {@link #index(int, int)} turns
+ * the two 9-bit masks of BitboardField and BoardMasks into this number, and
+ * swapping them gives the state for the other side. For the macroboard, pass
+ * the tied microboards with the opponent's, as nobody can use them.
+ *
+ * The tables are built when the class is loaded, which takes a few milliseconds.
+ */
+public final class MicroboardTables {
+
+    /** Number of states of a 3x3 board */
+    public static final int STATES = 19683;
+
+    private static final int[] LINES = BoardMasks.getWinLines();
+    // BASE3[mask] is the mask read as base 3 digits
+    private static final int[] BASE3 = new int[512];
+    private static final int UNKNOWN = Byte.MIN_VALUE;
+
+    // With the own player to move: 10 - plies to the win, 0 tie, plies to the loss - 10
+    private static final byte[] SCORES = new byte[STATES];
+    // Empty cells that reach the best score
+    private static final short[] BEST_MOVES = new short[STATES];
+    // Empty cells that complete a line of own cells
+    private static final short[] WINNING_CELLS = new short[STATES];
+    // Lines with two own cells and an empty cell
+    private static final byte[] THREATS = new byte[STATES];
+    // Lines with one own cell and two empty cells
+    private static final byte[] OPEN_LINES = new byte[STATES];
+
+    static {
+        for (int mask = 0; mask < 512; mask++) {
+            int value = 0;
+            for (int bit = 8; bit >= 0; bit--)
+                value = value * 3 + ((mask >> bit) & 1);
+            BASE3[mask] = value;
+        }
+        Arrays.fill(SCORES, (byte) UNKNOWN);
+        for (int own = 0; own < 512; own++) {
+            for (int other = 0; other < 512; other++) {
+                if ((own & other) != 0)
+                    continue;
+                int index = index(own, other);
+                score(own, other);
+                int empty = BoardMasks.FULL & ~(own | other);
+                int winning = 0;
+                for (int line : LINES) {
+                    if ((line & other) != 0)
+                        continue;
+                    int owned = Integer.bitCount(line & own);
+                    if (owned == 2) {
+                        THREATS[index]++;
+                        winning |= line & empty;
+                    }
+                    else if (owned == 1)
+                        OPEN_LINES[index]++;
+                }
+                WINNING_CELLS[index] = (short) winning;
+            }
+        }
+    }
+
+    private MicroboardTables() {
+    }
+
+    /**
+     * @param own The cells of the player whose point of view is wanted
+     * @param other The cells of the opponent
+     * @return The state, 0 to STATES - 1
+     */
+    public static int index(int own, int other) {
+        return BASE3[own] + 2 * BASE3[other];
+    }
+
+    /**
+     * The result of the board as a game of tic-tac-toe of its own, with the
+     * own player to move and perfect play from both sides.
+     * @param index See {@link #index(int, int)}
+     * @return 1 if the own player wins, 0 for a tie, -1 if the opponent wins.
+     * A board that is already won is won, whoever moves.
+     */
+    public static int getValue(int index) {
+        return Integer.signum(SCORES[index]);
+    }
+
+    /**
+     * @param index See {@link #index(int, int)}
+     * @return Like getValue, but 10 minus the plies to a win, or the plies to a loss minus 10
+     */
+    public static int getScore(int index) {
+        return SCORES[index];
+    }
+
+    /**
+     * @param index See {@link #index(int, int)}
+     * @return 9-bit mask of the empty cells that win fastest or lose slowest
+     * for the own player to move, 0 if the board is full or won
+     */
+    public static int getBestMoves(int index) {
+        return BEST_MOVES[index];
+    }
+
+    /**
+     * @param index See {@link #index(int, int)}
+     * @return 9-bit mask of the empty cells that complete a line for the own player
+     */
+    public static int getWinningCells(int index) {
+        return WINNING_CELLS[index];
+    }
+
+    /**
+     * @param index See {@link #index(int, int)}
+     * @return Number of lines with two own cells and an empty cell
+     */
+    public static int getThreats(int index) {
+        return THREATS[index];
+    }
+
+    /**
+     * @param index See {@link #index(int, int)}
+     * @return Number of lines with one own cell and two empty cells
+     */
+    public static int getOpenLines(int index) {
+        return OPEN_LINES[index];
+    }
+
+    // Negamax over all states, each solved once
+    private static int score(int own, int other) {
+        int index = index(own, other);
+        if (SCORES[index] != UNKNOWN)
+            return SCORES[index];
+        int best;
+        int bestMoves = 0;
+        if (BoardMasks.isWon(own))
+            best = 10;
+        else if (BoardMasks.isWon(other))
+            best = -10;
+        else if ((own | other) == BoardMasks.FULL)
+            best = 0;
+        else {
+            best = -11;
+            for (int cell = 0; cell < 9; cell++) {
+                int bit = 1 << cell;
+                if (((own | other) & bit) != 0)
+                    continue;
+                int score = -score(other, own | bit);
+                // A win or loss further away is worth less
+                if (score > 0) score--;
+                else if (score < 0) score++;
+                if (score > best) {
+                    best = score;
+                    bestMoves = bit;
+                }
+                else if (score == best)
+                    bestMoves |= bit;
+            }
+        }
+        SCORES[index] = (byte) best;
+        BEST_MOVES[index] = (short) bestMoves;
+        return best;
+    }
+}
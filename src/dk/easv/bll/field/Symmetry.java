@@ -0,0 +1,226 @@
+package dk.easv.bll.field;
+
+import dk.easv.bll.move.IMove;
+import dk.easv.bll.move.Move;
+
+/**
+ * The 8 symmetries of the board: the rotations by 0, 90, 180 and 270 degrees
+ * and the mirror images in the two middle lines and the two diagonals.
+ *
+ * Turning the whole 9x9 board turns the macroboard and every microboard the
+ * same way, so a turned position follows the same rules: a move sends the
+ * opponent to the turned microboard. Its best move is the turned best move,
+ * so caches can store one position for all 8 and map the moves.
+ *
+ * A symmetry is a number from 0 to 7, 0 is the identity. Cells are x * 9 + y,
+ * masks are 9-bit masks of a 3x3 board with bit x * 3 + y, which is how
+ * BitboardField stores the macroboard and every microboard.
+ */
+public final class Symmetry {
+
+    public static final int COUNT = 8;
+    public static final int IDENTITY = 0;
+
+    private static final int[] INVERSE = {0, 3, 2, 1, 4, 5, 6, 7};
+    // CELLS[symmetry][x * 9 + y] is where the symmetry moves the cell
+    private static final int[][] CELLS = new int[COUNT][81];
+    // MASKS[symmetry][mask] is the turned mask of a 3x3 board
+    private static final int[][] MASKS = new int[COUNT][512];
+    // MICROS[symmetry][micro] is where the symmetry moves the microboard, or the cell of a microboard
+    private static final int[][] MICROS = new int[COUNT][9];
+
+    static {
+        for (int symmetry = 0; symmetry < COUNT; symmetry++) {
+            for (int x = 0; x < 9; x++)
+                for (int y = 0; y < 9; y++)
+                    CELLS[symmetry][x * 9 + y] = transform(symmetry, x, y, 8);
+            for (int x = 0; x < 3; x++)
+                for (int y = 0; y < 3; y++) {
+                    int turned = transform(symmetry, x, y, 2);
+                    MICROS[symmetry][x * 3 + y] = turned / 9 * 3 + turned % 9;
+                }
+            for (int mask = 0; mask < 512; mask++) {
+                int turned = 0;
+                for (int bit = 0; bit < 9; bit++) {
+                    if ((mask & (1 << bit)) != 0)
+                        turned |= 1 << MICROS[symmetry][bit];
+                }
+                MASKS[symmetry][mask] = turned;
+            }
+        }
+    }
+
+    private Symmetry() {
+    }
+
+    /**
+     * @return The symmetry that undoes the symmetry
+     */
+    public static int inverse(int symmetry) {
+        return INVERSE[symmetry];
+    }
+
+    /**
+     * @param symmetry 0 to 7
+     * @param cell x * 9 + y
+     * @return The turned cell
+     */
+    public static int mapCell(int symmetry, int cell) {
+        return CELLS[symmetry][cell];
+    }
+
+    /**
+     * @param symmetry The symmetry that turned the board
+     * @param cell A cell x * 9 + y of the turned board
+     * @return The cell on the board before it was turned
+     */
+    public static int unmapCell(int symmetry, int cell) {
+        return CELLS[INVERSE[symmetry]][cell];
+    }
+
+    /**
+     * @param symmetry 0 to 7
+     * @param mask 9-bit mask of a microboard or the macroboard
+     * @return The turned mask
+     */
+    public static int mapMask(int symmetry, int mask) {
+        return MASKS[symmetry][mask];
+    }
+
+    /**
+     * @param symmetry 0 to 7
+     * @param micro Microboard (x / 3) * 3 + y / 3, or cell bit (x % 3) * 3 + y % 3 within a microboard
+     * @return The turned microboard or cell bit
+     */
+    public static int mapMicro(int symmetry, int micro) {
+        return MICROS[symmetry][micro];
+    }
+
+    /**
+     * @param symmetry 0 to 7
+     * @param move A move on the board
+     * @return The same move on the turned board
+     */
+    public static IMove map(int symmetry, IMove move) {
+        int cell = CELLS[symmetry][move.getX() * 9 + move.getY()];
+        return new Move(cell / 9, cell % 9);
+    }
+
+    /**
+     * @param symmetry The symmetry that turned the board
+     * @param move A move on the turned board
+     * @return The same move on the board before it was turned
+     */
+    public static IMove unmap(int symmetry, IMove move) {
+        return map(INVERSE[symmetry], move);
+    }
+
+    /**
+     * Finds the orientation the 8 turned versions of a position all agree on:
+     * the one whose masks (active microboards, then the cells of player 0 and
+     * of player 1 by microboard) are the smallest. Positions that are turned
+     * versions of each other have the same canonical form.
+     * @param field The position, fastest for a BitboardField
+     * @return The symmetry that turns the field into its canonical form.
+     * If the position is symmetric more than one does, this is the lowest.
+     */
+    public static int canonicalSymmetry(IField field) {
+        int[] masks = new int[19];
+        readMasks(field, masks);
+        int best = IDENTITY;
+        for (int symmetry = 1; symmetry < COUNT; symmetry++) {
+            if (compare(masks, symmetry, best) < 0)
+                best = symmetry;
+        }
+        return best;
+    }
+
+    /**
+     * @param field The position
+     * @param symmetry 0 to 7
+     * @return A new BitboardField with the turned position
+     */
+    public static BitboardField transform(IField field, int symmetry) {
+        String[][] board = field.getBoard();
+        String[][] macroBoard = field.getMacroboard();
+        String[][] turnedBoard = new String[9][9];
+        String[][] turnedMacro = new String[3][3];
+        for (int x = 0; x < 9; x++)
+            for (int y = 0; y < 9; y++) {
+                int cell = CELLS[symmetry][x * 9 + y];
+                turnedBoard[cell / 9][cell % 9] = board[x][y];
+            }
+        for (int x = 0; x < 3; x++)
+            for (int y = 0; y < 3; y++) {
+                int micro = MICROS[symmetry][x * 3 + y];
+                turnedMacro[micro / 3][micro % 3] = macroBoard[x][y];
+            }
+        BitboardField turned = new BitboardField();
+        turned.setBoard(turnedBoard);
+        turned.setMacroboard(turnedMacro);
+        return turned;
+    }
+
+    // Active mask, then the cells of player 0 and player 1 by microboard
+    private static void readMasks(IField field, int[] masks) {
+        if (field instanceof BitboardField) {
+            BitboardField bitboard = (BitboardField) field;
+            masks[0] = bitboard.getActiveMask();
+            for (int micro = 0; micro < 9; micro++) {
+                masks[1 + micro] = bitboard.getCells(0, micro);
+                masks[10 + micro] = bitboard.getCells(1, micro);
+            }
+            return;
+        }
+        for (int i = 0; i < masks.length; i++)
+            masks[i] = 0;
+        String[][] macroBoard = field.getMacroboard();
+        for (int x = 0; x < 3; x++)
+            for (int y = 0; y < 3; y++) {
+                if (macroBoard[x][y].equals(IField.AVAILABLE_FIELD))
+                    masks[0] |= 1 << (x * 3 + y);
+            }
+        for (int x = 0; x < 9; x++)
+            for (int y = 0; y < 9; y++) {
+                String id = field.getPlayerId(x, y);
+                int micro = (x / 3) * 3 + y / 3;
+                int bit = 1 << ((x % 3) * 3 + y % 3);
+                if (id.equals("0"))
+                    masks[1 + micro] |= bit;
+                else if (id.equals("1"))
+                    masks[10 + micro] |= bit;
+            }
+    }
+
+    // Compares the masks turned by two symmetries, in the order of the turned position
+    private static int compare(int[] masks, int a, int b) {
+        int diff = MASKS[a][masks[0]] - MASKS[b][masks[0]];
+        if (diff != 0)
+            return diff;
+        int[] fromA = MICROS[INVERSE[a]];
+        int[] fromB = MICROS[INVERSE[b]];
+        for (int offset = 1; offset < masks.length; offset += 9) {
+            for (int micro = 0; micro < 9; micro++) {
+                // The microboard that ends up at this place
+                diff = MASKS[a][masks[offset + fromA[micro]]] - MASKS[b][masks[offset + fromB[micro]]];
+                if (diff != 0)
+                    return diff;
+            }
+        }
+        return 0;
+    }
+
+    // The 8 symmetries of a square with cells 0 to n in both directions, as x * 9 + y
+    private static int transform(int symmetry, int x, int y, int n) {
+        switch (symmetry) {
+            case 0: return x * 9 + y;
+            case 1: return (n - y) * 9 + x;
+            case 2: return (n - x) * 9 + (n - y);
+            case 3: return y * 9 + (n - x);
+            case 4: return (n - x) * 9 + y;
+            case 5: return x * 9 + (n - y);
+            case 6: return y * 9 + x;
+            default: return (n - y) * 9 + (n - x);
+        }
+    }
+}
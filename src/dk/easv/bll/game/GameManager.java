@@ -1,10 +1,32 @@
 package dk.easv.bll.game;
 
+import dk.easv.bll.bot.CancellationToken;
+import dk.easv.bll.bot.IAsyncBot;
 import dk.easv.bll.bot.IBot;
+import dk.easv.bll.bot.IPonderBot;
+import dk.easv.bll.bot.ISeedableBot;
+import dk.easv.bll.bot.SyncBotAdapter;
+import dk.easv.bll.field.BitboardField;
+import dk.easv.bll.field.BoardMasks;
+import dk.easv.bll.field.Field;
 import dk.easv.bll.field.IField;
 import dk.easv.bll.move.IMove;
 import dk.easv.bll.move.Move;
 
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
 /**
  * This is a proposed GameManager for Ultimate Tic-Tac-Toe,
  * the implementation of which is up to whoever uses this interface.
@@ -31,6 +53,36 @@ public class GameManager {
         Win,
         Tie
     }
+
+    /**
+     * What happens when a bot uses more than the time per move.
+     */
+    public enum TimeoutPolicy{
+        Forfeit,    // the bot loses the game
+        RandomMove, // a random legal move is played for the bot
+        Ignore      // the move is waited for, and only counted as a timeout
+    }
+
+    /**
+     * Returned by makeMove when the move is not legal.
+     */
+    public static final long NO_UNDO = -1L;
+
+    /**
+     * Extra time a bot gets on top of the time per move, for the overhead of
+     * handing the move over, before it is timed out.
+     */
+    public static final int DEFAULT_TIMEOUT_GRACE = 50;
+
+    private static final GameOverState[] GAME_OVER_STATES = GameOverState.values();
+
+    // Bot moves run here, so a bot that does not return can be left behind.
+    // A cached pool starts a new thread when a timed out bot still holds one.
+    private static final ExecutorService BOT_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "Bot move");
+        thread.setDaemon(true); // don't keep the application alive
+        return thread;
+    });
     
     private final IGameState currentState;
     private int currentPlayer = 0; //player0 == 0 && player1 == 1
@@ -38,6 +90,32 @@ public class GameManager {
     private IBot bot = null;
     private IBot bot2 = null;
     private volatile GameOverState gameOver = GameOverState.Active;
+    private int forfeitWinner = -1;
+
+    private TimeoutPolicy timeoutPolicy = TimeoutPolicy.Forfeit;
+    private int timeoutGrace = DEFAULT_TIMEOUT_GRACE;
+    // Think time of the bot move with that move number, in nanoseconds
+    private final long[] thinkTimes = new long[81];
+    private final long[] totalThinkTime = new long[2];
+    private final long[] maxThinkTime = new long[2];
+    private final int[] botMoves = new int[2];
+    private final int[] timeouts = new int[2];
+    // Random moves on timeouts, from the seed of the game if it has one
+    private SplittableRandom random;
+    // Cell x * 9 + y of the move with that move number
+    private final byte[] moves = new byte[81];
+    // Bots that implement IPonderBot think on the opponent's time. Moves can
+    // be made on bot threads and the game stopped on another, so starting and
+    // stopping happens under the lock.
+    private final Object ponderLock = new Object();
+    private volatile boolean pondering;
+    private IPonderBot ponderBot;
+    private Future<?> ponder;
+    // The last bot move timed out, so the bot may still be busy with it
+    private volatile boolean timedOut;
+    // Moves the bots timed out on, done when the bots have really returned;
+    // index 0 for bot, 1 for bot2
+    private final CompletableFuture<?>[] busy = new CompletableFuture<?>[2];
 
     public void setGameOver(GameOverState state) {
         gameOver = state;
@@ -57,6 +135,174 @@ public class GameManager {
     {
         return currentState;
     }
+
+    /**
+     * @return The player who won, 0 or 1, or -1 when the game is tied or still active
+     */
+    public int getWinner() {
+        if (forfeitWinner >= 0)
+            return forfeitWinner;
+        // The game is won by the move just made
+        return gameOver == GameOverState.Win ? 1 - currentPlayer : -1;
+    }
+
+    /**
+     * Ends the game with a loss for the player, e.g. for breaking the rules.
+     * @param player The player who loses, 0 or 1
+     */
+    public void forfeit(int player) {
+        forfeitWinner = 1 - player;
+        gameOver = GameOverState.Win;
+        stopPondering();
+    }
+
+    /**
+     * @return true if the game ended by a forfeit rather than on the board
+     */
+    public boolean isForfeited() {
+        return forfeitWinner >= 0;
+    }
+
+    /**
+     * Makes the game repeatable: bots that implement ISeedableBot get a seed
+     * made from it, and so do the random moves of the RandomMove timeout policy.
+     * Call it before the first move.
+     * @param seed Seed of the game
+     */
+    public void setSeed(long seed) {
+        random = new SplittableRandom(seed);
+        long seed0 = random.nextLong();
+        long seed1 = random.nextLong();
+        if (bot instanceof ISeedableBot)
+            ((ISeedableBot) bot).setSeed(seed0);
+        if (bot2 instanceof ISeedableBot)
+            ((ISeedableBot) bot2).setSeed(seed1);
+    }
+
+    public TimeoutPolicy getTimeoutPolicy() {
+        return timeoutPolicy;
+    }
+
+    public void setTimeoutPolicy(TimeoutPolicy timeoutPolicy) {
+        this.timeoutPolicy = timeoutPolicy;
+    }
+
+    /**
+     * Lets bots that implement IPonderBot think while the opponent is to move.
+     * It is on by default against a human. Between bots it is off, as a
+     * pondering bot takes cores from the bot that is thinking, unless there
+     * are enough for both.
+     * Turning it off also stops a bot that is pondering, and one that is
+     * still moving won't start afterwards, e.g. when the game is abandoned.
+     * @param pondering true to let bots ponder
+     */
+    public void setPondering(boolean pondering) {
+        synchronized (ponderLock) {
+            this.pondering = pondering;
+            if (!pondering)
+                stopPondering();
+        }
+    }
+
+    public boolean isPondering() {
+        return pondering;
+    }
+
+    /**
+     * Bots that time out are only interrupted, so they can go on with the move
+     * after the game has given up on it. Bots are not thread safe: don't use
+     * such a bot in another game until it is done, or use a new one.
+     * @param bot One of the bots of the game
+     * @return true if the bot is still busy with a move it timed out on
+     */
+    public boolean isBusy(IBot bot) {
+        for (int slot = 0; slot < busy.length; slot++) {
+            if (busy[slot] != null && !busy[slot].isDone() && (slot == 0 ? this.bot : bot2) == bot)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Stops a bot that is pondering and waits for it, e.g. when a game is
+     * abandoned. Moves stop it anyway.
+     */
+    public void stopPondering() {
+        synchronized (ponderLock) {
+            if (ponder == null)
+                return;
+            // Also when it has not started yet, so the bot never ponders on a stale position
+            ponderBot.stopPonder(new GameState(currentState));
+            try {
+                ponder.get();
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            catch (ExecutionException ex) {
+                // A bot that fails to ponder can still move
+                Logger.getLogger(GameManager.class.getName()).log(Level.SEVERE, null, ex.getCause());
+            }
+            ponder = null;
+            ponderBot = null;
+        }
+    }
+
+    /**
+     * @param milliSeconds Extra time on top of the time per move before a bot is timed out
+     */
+    public void setTimeoutGrace(int milliSeconds) {
+        timeoutGrace = milliSeconds;
+    }
+
+    /**
+     * @return Think times of the bot moves in nanoseconds, indexed by move number.
+     * Moves made by humans or through makeMove are 0.
+     */
+    public long[] getThinkTimes() {
+        return Arrays.copyOf(thinkTimes, Math.min(currentState.getMoveNumber() + 1, thinkTimes.length));
+    }
+
+    /**
+     * @return The moves made so far as cells x * 9 + y, indexed by move number.
+     * Moves made before the game manager got the state are 0.
+     */
+    public byte[] getMoveHistory() {
+        return Arrays.copyOf(moves, Math.min(currentState.getMoveNumber(), moves.length));
+    }
+
+    /**
+     * @param player 0 or 1
+     * @return The longest think time of the player's bot in nanoseconds
+     */
+    public long getMaxThinkTime(int player) {
+        return maxThinkTime[player];
+    }
+
+    /**
+     * @param player 0 or 1
+     * @return The summed think time of the player's bot in nanoseconds
+     */
+    public long getTotalThinkTime(int player) {
+        return totalThinkTime[player];
+    }
+
+    /**
+     * @param player 0 or 1
+     * @return Number of moves the player's bot has been asked for
+     */
+    public int getBotMoveCount(int player) {
+        return botMoves[player];
+    }
+
+    /**
+     * @param player 0 or 1
+     * @return Number of moves where the player's bot used more than the time per move
+     */
+    public int getTimeouts(int player) {
+        return timeouts[player];
+    }
+
     private boolean playerGoesFirst = false;
     /**
      * Set's the currentState so the game can begin.
@@ -81,6 +327,7 @@ public class GameManager {
         playerGoesFirst=humanPlaysFirst;
         mode = GameMode.HumanVsBot;
         this.bot = bot;
+        pondering = true;
     }
     
     /**
@@ -105,54 +352,434 @@ public class GameManager {
      */
     public Boolean updateGame(IMove move)
     {
+        // The board arrays may have been written to from outside
+        IField field = currentState.getField();
+        if (field instanceof BitboardField)
+            ((BitboardField) field).syncFromViews();
+        else if (field instanceof Field)
+            ((Field) field).syncFromBoard();
         if(!verifyMoveLegality(move)) 
             return false;
         
         updateBoard(move);
         currentPlayer = (currentPlayer + 1) % 2;
+        stopPondering(); // the bot to move is asked with the new position
         
         return true;
     }
     
+    /**
+     * Applies a move and returns an undo record for unmakeMove, so a search can
+     * walk the game tree on one state instead of copying it for every node.
+     * Bots are not asked for moves.
+     * @param move The move to make for the current player
+     * @return The undo record, or NO_UNDO if the move is not legal.
+     */
+    public long makeMove(IMove move)
+    {
+        // Only does work the first time after getBoard, so searches keep the fast move generation
+        if (currentState.getField() instanceof Field)
+            ((Field) currentState.getField()).syncFromBoard();
+        if(!verifyMoveLegality(move))
+            return NO_UNDO;
+
+        long undo = createUndoRecord(move.getX(), move.getY());
+        updateBoard(move);
+        currentPlayer = (currentPlayer + 1) % 2;
+        return undo;
+    }
+
+    /**
+     * Same as makeMove(IMove), without allocating a move when the state
+     * is backed by a BitboardField.
+     * @param x Column
+     * @param y Row
+     * @return The undo record, or NO_UNDO if the move is not legal.
+     */
+    public long makeMove(int x, int y)
+    {
+        if (!(currentState.getField() instanceof BitboardField))
+            return makeMove(new Move(x, y));
+
+        BitboardField field = (BitboardField) currentState.getField();
+        if(!field.isLegal(x, y))
+            return NO_UNDO;
+
+        long undo = createUndoRecord(x, y);
+        updateBitboard(field, x, y);
+        currentPlayer = (currentPlayer + 1) % 2;
+        return undo;
+    }
+
+    /**
+     * Reverts the move that returned the undo record. Moves must be unmade in
+     * the reverse order they were made. Restores the board, the macroboard,
+     * the move and round numbers, the current player, the game over state and
+     * the Zobrist key.
+     * @param undo Record returned by makeMove
+     */
+    public void unmakeMove(long undo)
+    {
+        int cell = (int) (undo & 0x7F);
+        int x = cell / 9;
+        int y = cell % 9;
+        int active = (int) (undo >>> 7) & 0x1FF;
+        int won0 = (int) (undo >>> 16) & 0x1FF;
+        int won1 = (int) (undo >>> 25) & 0x1FF;
+        int tied = (int) (undo >>> 34) & 0x1FF;
+
+        IField field = currentState.getField();
+        int activeAfter = Zobrist.activeMask(field);
+        if (field instanceof BitboardField) {
+            ((BitboardField) field).undo(x, y, active, won0, won1, tied);
+        }
+        else {
+            field.setPlayerId(x, y, IField.EMPTY_FIELD);
+            String[][] macroBoard = field.getMacroboard();
+            for (int i = 0; i < 3; i++)
+                for (int k = 0; k < 3; k++) {
+                    int bit = 1 << (i * 3 + k);
+                    if ((won0 & bit) != 0) macroBoard[i][k] = "0";
+                    else if ((won1 & bit) != 0) macroBoard[i][k] = "1";
+                    else if ((tied & bit) != 0) macroBoard[i][k] = "TIE";
+                    else if ((active & bit) != 0) macroBoard[i][k] = IField.AVAILABLE_FIELD;
+                    else macroBoard[i][k] = IField.EMPTY_FIELD;
+                }
+        }
+
+        if(currentState.getMoveNumber() % 2 == 0) { currentState.setRoundNumber(currentState.getRoundNumber() - 1); }
+        currentState.setMoveNumber(currentState.getMoveNumber() - 1);
+        gameOver = GAME_OVER_STATES[(int) (undo >>> 43) & 3];
+        currentPlayer = (int) (undo >>> 45) & 1;
+        currentState.setZobristKey(Zobrist.move(currentState.getZobristKey(), currentPlayer,
+                cell, active, activeAfter));
+    }
+
+    /*
+     * Undo record layout, low to high bits: cell x * 9 + y (7), active mask (9),
+     * won mask player 0 (9), won mask player 1 (9), tied mask (9),
+     * game over state (2), current player (1).
+     */
+    private long createUndoRecord(int x, int y)
+    {
+        int active = 0, won0 = 0, won1 = 0, tied = 0;
+        IField field = currentState.getField();
+        if (field instanceof BitboardField) {
+            BitboardField bitboard = (BitboardField) field;
+            active = bitboard.getActiveMask();
+            won0 = bitboard.getWonMask(0);
+            won1 = bitboard.getWonMask(1);
+            tied = bitboard.getTiedMask();
+        }
+        else {
+            String[][] macroBoard = field.getMacroboard();
+            for (int i = 0; i < 3; i++)
+                for (int k = 0; k < 3; k++) {
+                    int bit = 1 << (i * 3 + k);
+                    String value = macroBoard[i][k];
+                    if (value.equals("0")) won0 |= bit;
+                    else if (value.equals("1")) won1 |= bit;
+                    else if (value.equals("TIE")) tied |= bit;
+                    else if (value.equals(IField.AVAILABLE_FIELD)) active |= bit;
+                }
+        }
+        return (x * 9 + y)
+                | (long) active << 7
+                | (long) won0 << 16
+                | (long) won1 << 25
+                | (long) tied << 34
+                | (long) gameOver.ordinal() << 43
+                | (long) currentPlayer << 45;
+    }
+
     /**
      * Non-User driven input, e.g. an update for playing a bot move.
-     * @return Returns true if the update was successful, false otherwise.
+     * The bot gets the time per move of the state plus the timeout grace.
+     * If it takes longer, the timeout policy decides what happens; with
+     * Forfeit the bot loses and the game is over.
+     * @return Returns true if the update was successful or the bot forfeited
+     * on time, false otherwise.
      */
     public Boolean updateGame()
     {
         //Check game mode is set to one of the bot modes.
         assert(mode != GameMode.HumanVsHuman);
-        
-        //Check if player is bot, if so, get bot input and update the state based on that.
-        if(mode == GameMode.HumanVsBot && currentPlayer == 1 && playerGoesFirst)
-        {
-             IMove botMove = bot.doMove(new GameState(currentState));
-             return updateGame(botMove);
-        }
-        else if(mode == GameMode.HumanVsBot && !playerGoesFirst && currentPlayer == 0)
-        {
-            IMove botMove = bot.doMove(new GameState(currentState));
-            return updateGame(botMove);
+
+        IBot botToMove = getBotToMove();
+        if (botToMove == null)
+            return false;
+
+        return applyBotMove(botToMove, askBot(botToMove));
+    }
+
+    /**
+     * Same as updateGame(), but returns at once and makes the move when the
+     * bot has answered, so games don't need a thread each. Bots that
+     * implement IAsyncBot are asked directly, and a timeout cancels them.
+     * Normal bots think on a thread of the executor.
+     * Ask for the next move only when the future has completed.
+     * @param executor Runs the moves of normal bots
+     * @return Completes with what updateGame() returns, or exceptionally if the bot failed
+     */
+    public CompletableFuture<Boolean> updateGameAsync(ExecutorService executor)
+    {
+        assert(mode != GameMode.HumanVsHuman);
+
+        IBot botToMove = getBotToMove();
+        if (botToMove == null)
+            return CompletableFuture.completedFuture(false);
+        return askBotAsync(botToMove, executor).thenApply(botMove -> applyBotMove(botToMove, botMove));
+    }
+
+    /**
+     * Same as updateGameAsync(ExecutorService), with normal bots on the same
+     * threads as in updateGame().
+     */
+    public CompletableFuture<Boolean> updateGameAsync()
+    {
+        return updateGameAsync(BOT_EXECUTOR);
+    }
+
+    /**
+     * Plays a bot vs bot game to the end without blocking the calling thread.
+     * Many games can run at once on a small pool: with normal bots, a pool of
+     * n threads thinks about n moves at a time, however many games there are.
+     * A bot that fails or makes an illegal move loses the game.
+     * @param executor Runs the moves of normal bots
+     * @return Completes with the end of the game
+     */
+    public CompletableFuture<GameOverState> playAsync(ExecutorService executor)
+    {
+        if (gameOver != GameOverState.Active)
+            return CompletableFuture.completedFuture(gameOver);
+        return updateGameAsync(executor).handle((valid, ex) -> {
+            if (ex != null)
+                Logger.getLogger(GameManager.class.getName()).log(Level.WARNING, "Bot failed", ex);
+            if (ex != null || !valid)
+                forfeit(currentPlayer); // bot not following rules
+            return gameOver;
+        }).thenCompose(state -> playAsync(executor));
+    }
+
+    private Boolean applyBotMove(IBot botToMove, IMove botMove)
+    {
+        if (botMove == null)
+            return gameOver != GameOverState.Active; // forfeited on time
+        if (!updateGame(botMove))
+            return false;
+        startPondering(botToMove);
+        return true;
+    }
+
+    // Lets the bot that just moved think on the opponent's time
+    private void startPondering(IBot botThatMoved)
+    {
+        if (!(botThatMoved instanceof IPonderBot) || timedOut || gameOver != GameOverState.Active)
+            return;
+        if (bot == bot2)
+            return; // the same bot is to move again
+        IPonderBot ponderer = (IPonderBot) botThatMoved;
+        IGameState copy = new GameState(currentState);
+        synchronized (ponderLock) {
+            if (!pondering)
+                return; // turned off while the bot was moving
+            ponderBot = ponderer;
+            ponder = BOT_EXECUTOR.submit(() -> ponderer.startPonder(copy));
         }
-        
-        //Check bot is not equal to null, and throw an exception if it is.
-        assert(bot != null);
-        assert(bot2 != null);
+    }
 
-        //Check if player is bot, if so, get bot input and update the state based on that.
-        if(mode == GameMode.BotVsBot)
+    private IBot getBotToMove()
+    {
+        if (mode == GameMode.HumanVsBot)
+            return (currentPlayer == 1) == playerGoesFirst ? bot : null;
+        if (mode == GameMode.BotVsBot)
         {
+            //Check bot is not equal to null, and throw an exception if it is.
             assert(bot != null);
             assert(bot2 != null);
+            return currentPlayer == 0 ? bot : bot2;
+        }
+        return null;
+    }
 
-            IMove botMove = currentPlayer == 0 ? bot.doMove(new GameState(currentState)) : bot2.doMove(new GameState(currentState));
+    // Gets the bot's move within the time limit and records the think time
+    private IMove askBot(IBot botToMove)
+    {
+        IGameState copy = new GameState(currentState);
+        long limit = (currentState.getTimePerMove() + timeoutGrace) * 1_000_000L;
+        long start = System.nanoTime();
+        timedOut = false;
+        int slot = slot(botToMove);
+        if (!awaitIdle(slot, start + limit))
+            return timeout(start, limit);
+        if (timeoutPolicy == TimeoutPolicy.Ignore)
+        {
+            // Nothing to enforce, so the bot runs on this thread
+            IMove move = botToMove.doMove(copy);
+            recordThinkTime(System.nanoTime() - start, limit);
+            return move;
+        }
 
-            return updateGame(botMove);
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        Future<IMove> future = BOT_EXECUTOR.submit(() -> {
+            try {
+                return botToMove.doMove(copy);
+            }
+            finally {
+                done.complete(null);
+            }
+        });
+        try {
+            IMove move = future.get(start + limit - System.nanoTime(), TimeUnit.NANOSECONDS);
+            recordThinkTime(System.nanoTime() - start, limit);
+            return move;
+        }
+        catch (TimeoutException ex) {
+            future.cancel(true); // interrupts the bot, if it listens
+            busy[slot] = done;
+            return timeout(start, limit);
+        }
+        catch (InterruptedException ex) {
+            future.cancel(true);
+            busy[slot] = done;
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        catch (ExecutionException ex) {
+            // The bot threw, pass it on as if it had been called directly
+            if (ex.getCause() instanceof RuntimeException)
+                throw (RuntimeException) ex.getCause();
+            if (ex.getCause() instanceof Error)
+                throw (Error) ex.getCause();
+            throw new RuntimeException(ex.getCause());
         }
-        return false;
     }
 
+    // Like askBot, without blocking: the timeout completes the future
+    private CompletableFuture<IMove> askBotAsync(IBot botToMove, ExecutorService executor)
+    {
+        IGameState copy = new GameState(currentState);
+        long limit = (currentState.getTimePerMove() + timeoutGrace) * 1_000_000L;
+        long start = System.nanoTime();
+        timedOut = false;
+        int slot = slot(botToMove);
+
+        // Failures of a move that was given up on don't matter any more
+        CompletableFuture<Boolean> idle = busy[slot] == null
+                ? CompletableFuture.completedFuture(true)
+                : busy[slot].handle((move, ex) -> true);
+        if (timeoutPolicy != TimeoutPolicy.Ignore)
+            idle = idle.completeOnTimeout(false, limit, TimeUnit.NANOSECONDS);
+
+        return idle.thenCompose(isIdle -> {
+            if (!isIdle)
+                return CompletableFuture.completedFuture(timeout(start, limit));
+            busy[slot] = null;
+            return askIdleBotAsync(botToMove, executor, copy, slot, start, limit);
+        });
+    }
 
+    private CompletableFuture<IMove> askIdleBotAsync(IBot botToMove, ExecutorService executor,
+            IGameState copy, int slot, long start, long limit)
+    {
+        CancellationToken cancellation = new CancellationToken();
+        IAsyncBot asyncBot = botToMove instanceof IAsyncBot
+                ? (IAsyncBot) botToMove
+                : new SyncBotAdapter(botToMove, executor);
+
+        CompletableFuture<IMove> botFuture;
+        try {
+            botFuture = asyncBot.doMoveAsync(copy, start + currentState.getTimePerMove() * 1_000_000L, cancellation);
+        }
+        catch (RuntimeException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+        // A copy, so the timeout does not complete the bot's own future
+        CompletableFuture<IMove> move = botFuture.copy();
+        if (timeoutPolicy != TimeoutPolicy.Ignore)
+            move.orTimeout(start + limit - System.nanoTime(), TimeUnit.NANOSECONDS);
+
+        return move.handle((botMove, ex) -> {
+            Throwable cause = ex instanceof CompletionException ? ex.getCause() : ex;
+            if (cause == null) {
+                recordThinkTime(System.nanoTime() - start, limit);
+                return botMove;
+            }
+            if (!(cause instanceof TimeoutException)) {
+                // The bot failed, pass it on as if it had been called directly
+                throw cause instanceof RuntimeException ? (RuntimeException) cause : new CompletionException(cause);
+            }
+            cancellation.cancel();
+            busy[slot] = botFuture;
+            return timeout(start, limit);
+        });
+    }
+
+    // The bot used up its time: applies the timeout policy
+    private IMove timeout(long start, long limit)
+    {
+        timedOut = true;
+        recordThinkTime(System.nanoTime() - start, limit);
+        if (timeoutPolicy == TimeoutPolicy.Forfeit) {
+            forfeit(currentPlayer);
+            return null;
+        }
+        return randomMove();
+    }
+
+    private int slot(IBot botToMove)
+    {
+        return botToMove == bot ? 0 : 1;
+    }
+
+    // A bot that timed out can still be busy with that move, as it is only
+    // interrupted. Bots are not thread safe, so it is asked again only when
+    // it has returned, and the wait counts as time of the new move.
+    private boolean awaitIdle(int slot, long deadline)
+    {
+        if (busy[slot] == null)
+            return true;
+        try {
+            if (timeoutPolicy == TimeoutPolicy.Ignore)
+                busy[slot].get();
+            else
+                busy[slot].get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+        catch (TimeoutException ex) {
+            return false;
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        catch (ExecutionException ex) {
+            // The move was given up on, so its failure doesn't matter
+        }
+        busy[slot] = null;
+        return true;
+    }
+
+    private void recordThinkTime(long nanos, long limit)
+    {
+        int moveNumber = currentState.getMoveNumber();
+        if (moveNumber < thinkTimes.length)
+            thinkTimes[moveNumber] = nanos;
+        totalThinkTime[currentPlayer] += nanos;
+        maxThinkTime[currentPlayer] = Math.max(maxThinkTime[currentPlayer], nanos);
+        botMoves[currentPlayer]++;
+        if (nanos > limit)
+            timeouts[currentPlayer]++;
+    }
+
+    private IMove randomMove()
+    {
+        int[] moves = new int[81];
+        int count = currentState.getField().getAvailableMoves(moves);
+        if (count == 0)
+            return null;
+        int move = moves[random != null ? random.nextInt(count) : ThreadLocalRandom.current().nextInt(count)];
+        return new Move(move / 9, move % 9);
+    }
 
     private Boolean verifyMoveLegality(IMove move)
     {
@@ -162,7 +789,7 @@ public class GameManager {
         if(isValid && (move.getX() < 0 || 9 <= move.getX())) isValid = false;
         if(isValid && (move.getY() < 0 || 9 <= move.getY())) isValid = false;
 
-        if(isValid && !field.getBoard()[move.getX()][move.getY()].equals(IField.EMPTY_FIELD))
+        if(isValid && !field.getPlayerId(move.getX(), move.getY()).equals(IField.EMPTY_FIELD))
             isValid=false;
 
         return isValid;
@@ -170,13 +797,43 @@ public class GameManager {
     
     private void updateBoard(IMove move)
     {
-        String[][] board = currentState.getField().getBoard();
-        board[move.getX()][move.getY()]=currentPlayer+"";
+        if (currentState.getField() instanceof BitboardField) {
+            updateBitboard((BitboardField) currentState.getField(), move.getX(), move.getY());
+            return;
+        }
+        recordMove(move.getX(), move.getY());
+        int activeBefore = Zobrist.activeMask(currentState.getField());
+        currentState.getField().setPlayerId(move.getX(), move.getY(), currentPlayer+"");
         currentState.setMoveNumber(currentState.getMoveNumber() + 1);
         if(currentState.getMoveNumber() % 2 == 0) { currentState.setRoundNumber(currentState.getRoundNumber() + 1); }
         checkAndUpdateIfWin(move);
         updateMacroboard(move);
+        currentState.setZobristKey(Zobrist.move(currentState.getZobristKey(), currentPlayer,
+                move.getX() * 9 + move.getY(), activeBefore, Zobrist.activeMask(currentState.getField())));
+
+    }
+
+    // Same rules as updateBoard, applied on the masks of a BitboardField
+    private void updateBitboard(BitboardField field, int x, int y)
+    {
+        recordMove(x, y);
+        int activeBefore = field.getActiveMask();
+        int result = field.play(x, y, currentPlayer);
+        currentState.setZobristKey(Zobrist.move(currentState.getZobristKey(), currentPlayer,
+                x * 9 + y, activeBefore, field.getActiveMask()));
+        currentState.setMoveNumber(currentState.getMoveNumber() + 1);
+        if(currentState.getMoveNumber() % 2 == 0) { currentState.setRoundNumber(currentState.getRoundNumber() + 1); }
+        if(result == BitboardField.RESULT_WIN)
+            gameOver = GameOverState.Win;
+        else if(result == BitboardField.RESULT_TIE)
+            gameOver = GameOverState.Tie;
+    }
 
+    private void recordMove(int x, int y)
+    {
+        int moveNumber = currentState.getMoveNumber();
+        if (moveNumber < moves.length)
+            moves[moveNumber] = (byte) (x * 9 + y);
     }
 
     private void checkAndUpdateIfWin(IMove move) {
@@ -187,80 +844,67 @@ public class GameManager {
         if(macroBoard[macroX][macroY].equals(IField.EMPTY_FIELD) ||
                 macroBoard[macroX][macroY].equals(IField.AVAILABLE_FIELD) ) {
 
-            String[][] board = getCurrentState().getField().getBoard();
+            // Read through getPlayerId, so the field can keep its own bookkeeping of the board
+            int micro = areaMasks(currentState.getField(), macroX * 3, macroY * 3, ""+currentPlayer);
 
-            if(isWin(board,move, ""+currentPlayer))
+            if(BoardMasks.isWon(micro & BoardMasks.FULL))
                 macroBoard[macroX][macroY] = currentPlayer + "";
-            else if(isTie(board,move))
+            else if(BoardMasks.isFull(micro >>> 9))
                 macroBoard[macroX][macroY] = "TIE";
             
             //Check macro win
-            if(isWin(macroBoard,new Move(macroX,macroY), ""+currentPlayer))
+            int macro = areaMasks(macroBoard, 0, 0, ""+currentPlayer);
+            if(BoardMasks.isWon(macro & BoardMasks.FULL))
                 gameOver = GameOverState.Win;
-            else if(isTie(macroBoard,new Move(macroX,macroY)))
+            else if(BoardMasks.isFull(macro >>> 9))
                 gameOver = GameOverState.Tie;
         }
 
     }
 
-    private boolean isTie(String[][] board, IMove move){
-        int localX = move.getX() % 3;
-        int localY = move.getY() % 3;
-        int startX = move.getX() - (localX);
-        int startY = move.getY() - (localY);
+    /*
+     * Reads the 3x3 area starting at (startX, startY) into two 9-bit masks
+     * (bit localX * 3 + localY): bits 0-8 hold the cells of playerId,
+     * bits 9-17 the cells that are taken or decided.
+     */
+    private static int areaMasks(IField field, int startX, int startY, String playerId) {
+        int masks = 0;
+        for (int i = 0; i < 3; i++)
+            for (int k = 0; k < 3; k++)
+                masks |= cellMasks(field.getPlayerId(startX + i, startY + k), playerId, i * 3 + k);
+        return masks;
+    }
 
-        for (int i = startX; i < startX+3; i++) {
-            for (int k = startY; k < startY+3; k++) {
-                if(board[i][k].equals(IField.AVAILABLE_FIELD) ||
-                        board[i][k].equals(IField.EMPTY_FIELD) )
-                    return false;
-            }
-        }
-        return true;
+    private static int areaMasks(String[][] board, int startX, int startY, String playerId) {
+        int masks = 0;
+        for (int i = 0; i < 3; i++)
+            for (int k = 0; k < 3; k++)
+                masks |= cellMasks(board[startX + i][startY + k], playerId, i * 3 + k);
+        return masks;
     }
 
+    private static int cellMasks(String value, String playerId, int bit) {
+        if (value.equals(playerId))
+            return (1 << bit) | (1 << (bit + 9));
+        if (value.equals(IField.AVAILABLE_FIELD) || value.equals(IField.EMPTY_FIELD))
+            return 0;
+        return 1 << (bit + 9);
+    }
 
+    /**
+     * Checks whether the player holds a row, column or diagonal through the
+     * move, in the 3x3 area containing it. Lines that don't go through the
+     * move are not looked at. Works for both the 9x9 board and the 3x3 macroboard.
+     * @param board The board to check
+     * @param move The position the lines go through
+     * @param currentPlayer The player id to look for
+     * @return true when a line through the move is the player's
+     */
     public static boolean isWin(String[][] board, IMove move, String currentPlayer){
-        int localX = move.getX() % 3;
-        int localY = move.getY() % 3;
-        int startX = move.getX() - (localX);
-        int startY = move.getY() - (localY);
-
-        //check col
-        for (int i = startY; i < startY + 3; i++) {
-            if (!board[move.getX()][i].equals(currentPlayer))
-                break;
-            if (i == startY + 3 - 1) return true;
-        }
-
-        //check row
-        for (int i = startX; i < startX + 3; i++) {
-            if (!board[i][move.getY()].equals(currentPlayer))
-                break;
-            if (i == startX + 3 - 1) return true;
-        }
-
-        //check diagonal
-        if (localX == localY) {
-            //we're on a diagonal
-            int y = startY;
-            for (int i = startX; i < startX + 3; i++) {
-                if (!board[i][y++].equals(currentPlayer))
-                    break;
-                if (i == startX + 3 - 1) return true;
-            }
-        }
-
-        //check anti diagonal
-        if (localX + localY == 3 - 1) {
-            int less = 0;
-            for (int i = startX; i < startX + 3; i++) {
-                if (!board[i][(startY + 2)-less++].equals(currentPlayer))
-                    break;
-                if (i == startX + 3 - 1) return true;
-            }
-        }
-        return false;
+        int startX = move.getX() - (move.getX() % 3);
+        int startY = move.getY() - (move.getY() % 3);
+        int bit = (move.getX() % 3) * 3 + move.getY() % 3;
+        return BoardMasks.isWonThrough(areaMasks(board, startX, startY, currentPlayer) & BoardMasks.FULL, bit);
     }
     
     private void updateMacroboard(IMove move)
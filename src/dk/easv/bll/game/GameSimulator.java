@@ -0,0 +1,251 @@
+package dk.easv.bll.game;
+
+import dk.easv.bll.field.BitboardField;
+import dk.easv.bll.field.BoardMasks;
+import dk.easv.bll.field.IField;
+import dk.easv.bll.move.IMove;
+
+import java.util.SplittableRandom;
+
+/**
+ * A headless game simulator for bots. Copy a position into it and play moves
+ * or whole playouts on it. It uses the same rules as GameManager, on a
+ * BitboardField, and does not allocate once created, so a bot can keep one
+ * instance and reuse it for every playout.
+ *
+ * Moves are encoded as x * 9 + y, like IField.getAvailableMoves(int[]).
+ * A simulator is not thread safe, use one per thread.
+ */
+public class GameSimulator {
+
+    private final BitboardField field = new BitboardField();
+    private final int[] moves = new int[81];
+    private int currentPlayer;
+    private int moveNumber;
+    private GameManager.GameOverState gameOver = GameManager.GameOverState.Active;
+    private int winner = -1;
+    private long zobristKey = Zobrist.emptyBoard();
+
+    /**
+     * Creates a simulator on an empty board.
+     */
+    public GameSimulator() {
+    }
+
+    /**
+     * Creates a simulator on a copy of the state.
+     * @param state The state to copy
+     */
+    public GameSimulator(IGameState state) {
+        setState(state);
+    }
+
+    /**
+     * Copies the position of the state into the simulator. The player to move
+     * is taken from the move number, the same way the bots do.
+     * @param state The state to copy
+     */
+    public void setState(IGameState state) {
+        IField source = state.getField();
+        if (source instanceof BitboardField)
+            field.copyFrom((BitboardField) source);
+        else {
+            // Read cell by cell, so a Field doesn't have to hand out its board array
+            field.clearBoard();
+            for (int x = 0; x < 9; x++)
+                for (int y = 0; y < 9; y++)
+                    field.setPlayerId(x, y, source.getPlayerId(x, y));
+            field.setMacroboard(source.getMacroboard());
+        }
+        moveNumber = state.getMoveNumber();
+        currentPlayer = moveNumber % 2;
+        zobristKey = Zobrist.compute(state);
+        updateGameOver();
+    }
+
+    /**
+     * Copies another simulator into this one without allocating.
+     * @param other The simulator to copy
+     */
+    public void copyFrom(GameSimulator other) {
+        field.copyFrom(other.field);
+        currentPlayer = other.currentPlayer;
+        moveNumber = other.moveNumber;
+        gameOver = other.gameOver;
+        winner = other.winner;
+        zobristKey = other.zobristKey;
+    }
+
+    /**
+     * Resets the simulator to an empty board.
+     */
+    public void reset() {
+        field.clearBoard();
+        currentPlayer = 0;
+        moveNumber = 0;
+        gameOver = GameManager.GameOverState.Active;
+        winner = -1;
+        zobristKey = Zobrist.emptyBoard();
+    }
+
+    /**
+     * @return The field of the simulator. Moves should be played through the simulator.
+     */
+    public BitboardField getField() {
+        return field;
+    }
+
+    public int getCurrentPlayer() {
+        return currentPlayer;
+    }
+
+    public int getMoveNumber() {
+        return moveNumber;
+    }
+
+    public GameManager.GameOverState getGameOver() {
+        return gameOver;
+    }
+
+    /**
+     * @return The Zobrist key of the position, the same as IGameState.getZobristKey
+     */
+    public long getZobristKey() {
+        return zobristKey;
+    }
+
+    /**
+     * @return 0 or 1 for the player who won the game, -1 if the game is tied or still active
+     */
+    public int getWinner() {
+        return winner;
+    }
+
+    /**
+     * @param buffer Array with room for at least 81 moves
+     * @return Number of available moves written to the buffer, 0 when the game is over
+     */
+    public int getAvailableMoves(int[] buffer) {
+        if (gameOver != GameManager.GameOverState.Active)
+            return 0;
+        return field.getAvailableMoves(buffer);
+    }
+
+    /**
+     * Plays a move for the current player.
+     * @param x Column
+     * @param y Row
+     * @return true if the move was legal and played, false otherwise
+     */
+    public boolean play(int x, int y) {
+        if (gameOver != GameManager.GameOverState.Active || !field.isLegal(x, y))
+            return false;
+        playLegal(x, y);
+        return true;
+    }
+
+    /**
+     * Plays a move encoded as x * 9 + y for the current player.
+     * @param move The move
+     * @return true if the move was legal and played, false otherwise
+     */
+    public boolean play(int move) {
+        return play(move / 9, move % 9);
+    }
+
+    /**
+     * Checks whether the current player wins the microboard by playing the move.
+     * @param x Column
+     * @param y Row
+     * @return true when the move completes a row, column or diagonal
+     */
+    public boolean isWinningMove(int x, int y) {
+        int micro = (x / 3) * 3 + y / 3;
+        int bit = 1 << ((x % 3) * 3 + y % 3);
+        return BoardMasks.isWon(field.getCells(currentPlayer, micro) | bit);
+    }
+
+    /**
+     * Plays random moves until the game is over.
+     * @param random The random generator to use
+     * @return The winner, 0 or 1, or -1 for a tie
+     */
+    public int playout(SplittableRandom random) {
+        while (gameOver == GameManager.GameOverState.Active) {
+            int count = field.getAvailableMoves(moves);
+            int move = moves[random.nextInt(count)];
+            playLegal(move / 9, move % 9);
+        }
+        return winner;
+    }
+
+    /**
+     * Plays the moves chosen by the policy until the game is over.
+     * @param policy The policy choosing the moves
+     * @return The winner, 0 or 1, or -1 for a tie
+     */
+    public int playout(PlayoutPolicy policy) {
+        while (gameOver == GameManager.GameOverState.Active) {
+            int count = field.getAvailableMoves(moves);
+            int move = policy.selectMove(this, moves, count);
+            playLegal(move / 9, move % 9);
+        }
+        return winner;
+    }
+
+    /**
+     * Checks whether placing the player's marker at the move wins the microboard
+     * of the move. Shared by the bots that look for winning moves.
+     * @param state The state to check
+     * @param move The move, on an empty cell or one already taken by the player
+     * @param player The player id, "0" or "1"
+     * @return true when the move completes a row, column or diagonal
+     */
+    public static boolean isWinningMove(IGameState state, IMove move, String player) {
+        IField field = state.getField();
+        int startX = move.getX() - (move.getX() % 3);
+        int startY = move.getY() - (move.getY() % 3);
+        int mask = 1 << ((move.getX() % 3) * 3 + move.getY() % 3);
+        if (field instanceof BitboardField) {
+            mask |= ((BitboardField) field).getCells(player.equals("0") ? 0 : 1, (startX / 3) * 3 + startY / 3);
+        }
+        else {
+            for (int i = 0; i < 3; i++)
+                for (int k = 0; k < 3; k++) {
+                    if (field.getPlayerId(startX + i, startY + k).equals(player))
+                        mask |= 1 << (i * 3 + k);
+                }
+        }
+        return BoardMasks.isWon(mask);
+    }
+
+    private void playLegal(int x, int y) {
+        int activeBefore = field.getActiveMask();
+        int result = field.play(x, y, currentPlayer);
+        zobristKey = Zobrist.move(zobristKey, currentPlayer, x * 9 + y, activeBefore, field.getActiveMask());
+        if (result == BitboardField.RESULT_WIN) {
+            gameOver = GameManager.GameOverState.Win;
+            winner = currentPlayer;
+        }
+        else if (result == BitboardField.RESULT_TIE)
+            gameOver = GameManager.GameOverState.Tie;
+        moveNumber++;
+        currentPlayer = 1 - currentPlayer;
+    }
+
+    private void updateGameOver() {
+        winner = -1;
+        gameOver = GameManager.GameOverState.Active;
+        int won0 = field.getWonMask(0);
+        int won1 = field.getWonMask(1);
+        if (BoardMasks.isWon(won0))
+            winner = 0;
+        else if (BoardMasks.isWon(won1))
+            winner = 1;
+
+        if (winner >= 0)
+            gameOver = GameManager.GameOverState.Win;
+        else if (BoardMasks.isFull(won0 | won1 | field.getTiedMask()))
+            gameOver = GameManager.GameOverState.Tie;
+    }
+}
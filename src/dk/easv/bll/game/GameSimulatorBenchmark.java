@@ -0,0 +1,65 @@
+package dk.easv.bll.game;
+
+import java.util.SplittableRandom;
+
+/**
+ * Measures how many random playouts per second GameSimulator runs on one thread,
+ * from the empty board and from a position a few moves into the game.
+ * Each playout starts with a copy of the position, the way a Monte Carlo bot uses it.
+ *
+ * Run with an optional minimum as argument, e.g. {@code GameSimulatorBenchmark 200000};
+ * the program exits with status 1 when a figure is below it.
+ */
+public class GameSimulatorBenchmark {
+
+    /** The figure the simulator is expected to reach on one core of an ordinary laptop */
+    public static final int MIN_PLAYOUTS_PER_SECOND = 200_000;
+
+    private static final long WARMUP_MILLIS = 2000;
+    private static final long MEASURE_MILLIS = 5000;
+
+    public static void main(String[] args) {
+        int minimum = args.length > 0 ? Integer.parseInt(args[0]) : MIN_PLAYOUTS_PER_SECOND;
+        SplittableRandom random = new SplittableRandom(42);
+
+        GameSimulator start = new GameSimulator();
+        GameSimulator opening = new GameSimulator();
+        int[] moves = new int[81];
+        for (int i = 0; i < 8; i++) {
+            int count = opening.getAvailableMoves(moves);
+            opening.play(moves[random.nextInt(count)]);
+        }
+
+        boolean passed = report("empty board", start, random, minimum);
+        passed &= report("after 8 moves", opening, random, minimum);
+        if (!passed)
+            System.exit(1);
+    }
+
+    private static boolean report(String name, GameSimulator position, SplittableRandom random, int minimum) {
+        run(position, random, WARMUP_MILLIS);
+        long start = System.nanoTime();
+        long playouts = run(position, random, MEASURE_MILLIS);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long perSecond = Math.round(playouts / seconds);
+        boolean passed = perSecond >= minimum;
+        System.out.println(name + ": " + perSecond + " playouts/s"
+                + (passed ? "" : " (below " + minimum + ")"));
+        return passed;
+    }
+
+    private static long run(GameSimulator position, SplittableRandom random, long millis) {
+        GameSimulator simulator = new GameSimulator();
+        long end = System.nanoTime() + millis * 1_000_000;
+        long playouts = 0;
+        int[] winners = new int[3]; // counting the results keeps the JIT from skipping the playouts
+        while (System.nanoTime() < end) {
+            for (int i = 0; i < 1000; i++) {
+                simulator.copyFrom(position);
+                winners[simulator.playout(random) + 1]++;
+            }
+            playouts += 1000;
+        }
+        return playouts;
+    }
+}
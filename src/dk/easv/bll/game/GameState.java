@@ -1,5 +1,6 @@
 package dk.easv.bll.game;
 
+import dk.easv.bll.field.BitboardField;
 import dk.easv.bll.field.Field;
 import dk.easv.bll.field.IField;
 
@@ -8,20 +9,48 @@ public class GameState implements IGameState{
     int moveNumber;
     int roundNumber;
     int timePerMove = 1000; //1000ms default value, can be changes depending on game specifics.
+    transient long zobristKey; // transient, the state is sent as JSON to the REST bot
 
     public GameState(){
         field = new Field();
         moveNumber=0;
         roundNumber=0;
+        zobristKey = Zobrist.emptyBoard();
     }
 
+    /**
+     * Creates an empty game on the given field, e.g. a BitboardField for fast simulations.
+     * @param field An empty field
+     */
+    public GameState(IField field){
+        this.field = field;
+        moveNumber=0;
+        roundNumber=0;
+        zobristKey = Zobrist.compute(this);
+    }
+
+    /**
+     * Copies the state. The copy uses the same kind of field as the original,
+     * so a bitboard game hands out bitboard copies.
+     * @param state The state to copy
+     */
     public GameState(IGameState state) {
-        field = new Field();
-        field.setMacroboard(state.getField().getMacroboard());
-        field.setBoard(state.getField().getBoard());
+        if (state.getField() instanceof BitboardField) {
+            field = new BitboardField((BitboardField) state.getField());
+        }
+        else if (state.getField() instanceof Field) {
+            field = new Field((Field) state.getField());
+        }
+        else {
+            field = new Field();
+            field.setMacroboard(state.getField().getMacroboard());
+            field.setBoard(state.getField().getBoard());
+        }
 
         moveNumber = state.getMoveNumber();
         roundNumber = state.getRoundNumber();
+        timePerMove = state.getTimePerMove();
+        zobristKey = state.getZobristKey();
     }
 
     @Override
@@ -49,6 +78,16 @@ public class GameState implements IGameState{
         this.roundNumber = roundNumber;
     }
 
+    @Override
+    public long getZobristKey() {
+        return zobristKey;
+    }
+
+    @Override
+    public void setZobristKey(long key) {
+        this.zobristKey = key;
+    }
+
     @Override
     public int getTimePerMove()
     {
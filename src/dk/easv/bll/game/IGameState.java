@@ -18,4 +18,22 @@ public interface IGameState {
 
     int getTimePerMove();
     void setTimePerMove(int milliSeconds);
+
+    /**
+     * 64-bit Zobrist key of the position (cells, active microboards and player to move),
+     * updated by the GameManager on every move. Code that edits the field directly
+     * can set it again with Zobrist.compute(state).
+     * By default it is computed from the field on every call; GameState keeps it instead.
+     * @return The key of the current position
+     */
+    default long getZobristKey() {
+        return Zobrist.compute(this);
+    }
+
+    /**
+     * Does nothing by default, as the default key is always computed.
+     * @param key The key of the current position
+     */
+    default void setZobristKey(long key) {
+    }
 }
@@ -0,0 +1,18 @@
+package dk.easv.bll.game;
+
+/**
+ * Chooses the moves of a GameSimulator playout, e.g. to prefer winning moves
+ * over random ones.
+ */
+public interface PlayoutPolicy {
+
+    /**
+     * Picks the next move for the current player of the simulator.
+     * Must not allocate if the playout is to stay allocation-free.
+     * @param simulator The simulator, positioned before the move
+     * @param moves The available moves, encoded as x * 9 + y
+     * @param count Number of moves in the array
+     * @return One of the moves from the array
+     */
+    int selectMove(GameSimulator simulator, int[] moves, int count);
+}
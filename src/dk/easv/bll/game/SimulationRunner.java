@@ -0,0 +1,351 @@
+package dk.easv.bll.game;
+
+import dk.easv.bll.bot.IBot;
+import dk.easv.bll.field.BitboardField;
+import dk.easv.bll.game.stats.GameRecord;
+import dk.easv.bll.game.stats.GameResult;
+import dk.easv.dal.GameRecordLog;
+
+import java.io.IOException;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs a number of bot vs bot games on a pool of threads.
+ *
+ * Games are handed out one at a time from a shared counter, so a thread that
+ * finishes its game early simply takes the next one, and exactly the requested
+ * number of games is played. Every thread has its own instances of the bots.
+ * The bots take turns starting: in even games bot 1 is player 0.
+ *
+ * Every game gets its own seed, made from the seed of the simulation and the
+ * number of the game, so it doesn't matter which thread plays it. The seed
+ * is given to the bots that implement ISeedableBot and is kept in the game
+ * record, and replay plays that game again.
+ *
+ * A simulation can be paused, resumed and cancelled while it runs.
+ */
+public class SimulationRunner {
+
+    /**
+     * Receives the finished games.
+     */
+    public interface ResultListener {
+        /**
+         * Called on the thread that played the game.
+         * @param result The game, player0 is the bot that started
+         * @param bot1Started true if bot 1 was player 0
+         */
+        void gameFinished(GameResult result, boolean bot1Started);
+    }
+
+    private final Class<? extends IBot> botClass1;
+    private final Class<? extends IBot> botClass2;
+    private final long games;
+    private final int threads;
+    private int timePerMove = 1000;
+    private GameManager.TimeoutPolicy timeoutPolicy = GameManager.TimeoutPolicy.Forfeit;
+    private ResultListener resultListener = (result, bot1Started) -> {};
+    private Runnable finishedListener = () -> {};
+    private GameRecordLog recordLog;
+    private long seed = System.nanoTime();
+
+    private final AtomicLong nextGame = new AtomicLong();
+    private final AtomicLong completedGames = new AtomicLong();
+    // Timeouts of bot 1 and bot 2
+    private final AtomicLong[] timeouts = {new AtomicLong(), new AtomicLong()};
+    private final AtomicInteger runningWorkers = new AtomicInteger();
+    private final Object pauseLock = new Object();
+    private volatile boolean paused = false;
+    private volatile boolean cancelled = false;
+    private volatile boolean started = false;
+    private ExecutorService executor;
+
+    /**
+     * @param botClass1 The first bot, needs a no-argument constructor
+     * @param botClass2 The second bot, needs a no-argument constructor
+     * @param games Number of games to play
+     * @param threads Number of threads to play on
+     */
+    public SimulationRunner(Class<? extends IBot> botClass1, Class<? extends IBot> botClass2, long games, int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("At least one thread is needed");
+        this.botClass1 = botClass1;
+        this.botClass2 = botClass2;
+        this.games = games;
+        this.threads = threads;
+    }
+
+    /**
+     * @param milliSeconds Time per move given to the bots
+     */
+    public void setTimePerMove(int milliSeconds) {
+        timePerMove = milliSeconds;
+    }
+
+    public void setTimeoutPolicy(GameManager.TimeoutPolicy timeoutPolicy) {
+        this.timeoutPolicy = timeoutPolicy;
+    }
+
+    /**
+     * @param listener Called with every finished game
+     */
+    public void setResultListener(ResultListener listener) {
+        resultListener = listener;
+    }
+
+    /**
+     * @param listener Called once when all games are played or the simulation is cancelled,
+     * on the last thread to stop
+     */
+    public void setFinishedListener(Runnable listener) {
+        finishedListener = listener;
+    }
+
+    /**
+     * @param seed Seed of the simulation, the same seed gives the same seeds for the games.
+     * Random unless set.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @param log Log that every finished game is appended to, with its moves, or null for none
+     */
+    public void setRecordLog(GameRecordLog log) {
+        recordLog = log;
+    }
+
+    /**
+     * Starts the simulation and returns at once.
+     */
+    public synchronized void start() {
+        if (started)
+            throw new IllegalStateException("The simulation is already started");
+        started = true;
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "Simulation");
+            thread.setDaemon(true); // don't keep the application alive
+            return thread;
+        });
+        runningWorkers.set(threads);
+        for (int i = 0; i < threads; i++)
+            executor.execute(this::work);
+        executor.shutdown();
+    }
+
+    /**
+     * Plays all games on the calling thread and returns when they are done,
+     * for callers that already run on a pool of their own.
+     */
+    public void run() {
+        synchronized (this) {
+            if (started)
+                throw new IllegalStateException("The simulation is already started");
+            started = true;
+            runningWorkers.set(1);
+        }
+        work();
+    }
+
+    /**
+     * Plays one game again on the calling thread, e.g. to debug or profile it.
+     * The game is not reported to the result listener.
+     * @param gameSeed The seed of the game, from its game record
+     * @param bot1Starts true if bot 1 was player 0 in the game
+     * @return The result, or null if the simulation was cancelled meanwhile
+     */
+    public GameResult replay(long gameSeed, boolean bot1Starts) {
+        return play(new IBot[]{newBot(botClass1), newBot(botClass2)}, bot1Starts, gameSeed);
+    }
+
+    /**
+     * Waits until all games are played or the simulation is cancelled.
+     * @throws InterruptedException If the waiting thread is interrupted
+     */
+    public void awaitCompletion() throws InterruptedException {
+        ExecutorService started;
+        synchronized (this) {
+            started = executor;
+        }
+        if (started != null)
+            started.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stops handing out games after the current ones. Games in progress are abandoned
+     * and not reported.
+     */
+    public void cancel() {
+        cancelled = true;
+        resume();
+        synchronized (this) {
+            if (executor != null)
+                executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Lets the games in progress finish, and holds back new games until resume is called.
+     */
+    public void pause() {
+        paused = true;
+    }
+
+    public void resume() {
+        synchronized (pauseLock) {
+            paused = false;
+            pauseLock.notifyAll();
+        }
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return true when the threads have stopped, because all games are played or the simulation was cancelled
+     */
+    public boolean isDone() {
+        return started && runningWorkers.get() == 0;
+    }
+
+    public long getCompletedGames() {
+        return completedGames.get();
+    }
+
+    public long getTotalGames() {
+        return games;
+    }
+
+    /**
+     * @param bot 1 or 2
+     * @return Number of moves where the bot used more than the time per move
+     */
+    public long getTimeouts(int bot) {
+        return timeouts[bot - 1].get();
+    }
+
+    /**
+     * @return Share of the games played, from 0 to 1
+     */
+    public double getProgress() {
+        return games == 0 ? 1 : (double) completedGames.get() / games;
+    }
+
+    private void work() {
+        try {
+            IBot[] bots = {newBot(botClass1), newBot(botClass2)};
+            long game;
+            while (!cancelled && (game = nextGame.getAndIncrement()) < games) {
+                waitWhilePaused();
+                if (cancelled)
+                    break;
+                boolean bot1Starts = game % 2 == 0;
+                long gameSeed = gameSeed(game);
+                GameResult result = play(bots, bot1Starts, gameSeed);
+                if (result == null)
+                    break; // cancelled in the middle of the game
+                completedGames.incrementAndGet();
+                resultListener.gameFinished(result, bot1Starts);
+            }
+        } catch (InterruptedException ex) {
+            // cancelled while paused
+        } catch (RuntimeException ex) {
+            Logger.getLogger(SimulationRunner.class.getName()).log(Level.SEVERE, null, ex);
+        } finally {
+            if (runningWorkers.decrementAndGet() == 0)
+                finishedListener.run();
+        }
+    }
+
+    private void waitWhilePaused() throws InterruptedException {
+        synchronized (pauseLock) {
+            while (paused && !cancelled)
+                pauseLock.wait();
+        }
+    }
+
+    // Plays one game, returns null if the simulation was cancelled meanwhile.
+    // A bot that is still busy with a move it timed out on is replaced in bots
+    // by a new one, as bots are not thread safe.
+    private GameResult play(IBot[] bots, boolean bot1Starts, long gameSeed) {
+        IBot player0 = bot1Starts ? bots[0] : bots[1];
+        IBot player1 = bot1Starts ? bots[1] : bots[0];
+        int bot1Player = bot1Starts ? 0 : 1;
+        GameState state = new GameState(new BitboardField());
+        state.setTimePerMove(timePerMove);
+        GameManager game = new GameManager(state, player0, player1);
+        game.setTimeoutPolicy(timeoutPolicy);
+        game.setSeed(gameSeed);
+        while (game.getGameOver() == GameManager.GameOverState.Active) {
+            if (cancelled)
+                return null;
+            boolean valid;
+            try {
+                valid = game.updateGame();
+            } catch (RuntimeException ex) {
+                Logger.getLogger(SimulationRunner.class.getName()).log(Level.WARNING, "Bot failed", ex);
+                valid = false;
+            }
+            if (!valid)
+                game.forfeit(game.getCurrentPlayer()); // bot not following rules
+        }
+        if (game.isBusy(bots[0]))
+            bots[0] = newBot(botClass1);
+        if (game.isBusy(bots[1]))
+            bots[1] = newBot(botClass2);
+        if (cancelled)
+            return null;
+        timeouts[0].addAndGet(game.getTimeouts(bot1Player));
+        timeouts[1].addAndGet(game.getTimeouts(1 - bot1Player));
+
+        GameResult.Winner winner = game.getWinner() == 0 ? GameResult.Winner.player0
+                : game.getWinner() == 1 ? GameResult.Winner.player1
+                : GameResult.Winner.tie;
+        if (recordLog != null)
+            record(game, player0.getBotName(), player1.getBotName(), winner, gameSeed);
+        return new GameResult(player0.getBotName(), player1.getBotName(), winner);
+    }
+
+    private void record(GameManager game, String player0, String player1, GameResult.Winner winner, long gameSeed) {
+        byte[] moves = game.getMoveHistory();
+        long[] nanos = game.getThinkTimes();
+        int[] thinkTimes = new int[moves.length];
+        for (int i = 0; i < moves.length && i < nanos.length; i++)
+            thinkTimes[i] = (int) Math.min(nanos[i] / 1000, Integer.MAX_VALUE);
+        try {
+            recordLog.append(new GameRecord(player0, player1, winner, game.isForfeited(), gameSeed,
+                    moves, thinkTimes, game.getTimeouts(0), game.getTimeouts(1)));
+        } catch (IOException ex) {
+            Logger.getLogger(SimulationRunner.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    // A different, well mixed seed for every game of the simulation
+    private long gameSeed(long gameNumber) {
+        long z = seed + gameNumber * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static IBot newBot(Class<? extends IBot> botClass) {
+        try {
+            return botClass.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("Could not create " + botClass.getName(), ex);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package dk.easv.bll.game;
+
+import dk.easv.bll.field.BitboardField;
+import dk.easv.bll.field.BoardMasks;
+import dk.easv.bll.field.IField;
+import dk.easv.bll.field.Symmetry;
+
+import java.util.SplittableRandom;
+
+/**
+ * 64-bit Zobrist keys for game positions. A position is the owner of every
+ * cell, the set of active microboards and the player to move. Won and tied
+ * microboards follow from the cells, so they are not part of the key.
+ *
+ * The random numbers come from a fixed seed, so keys are the same in every
+ * run and can be stored on disk. Keys are updated with a few XORs per move,
+ * see {@link #move(long, int, int, int, int)}.
+ */
+public class Zobrist {
+
+    private static final long SEED = 0x5DEECE66DL;
+
+    // CELL_KEYS[player * 81 + x * 9 + y]
+    private static final long[] CELL_KEYS = new long[2 * 81];
+    // MICRO_KEYS[player][micro][cells]: XOR of the keys of the cells of a microboard
+    private static final long[][][] MICRO_KEYS = new long[2][9][512];
+    // XOR of the keys of the microboards set in an active mask
+    private static final long[] ACTIVE_KEYS = new long[512];
+    private static final long SIDE_KEY;
+
+    static {
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int i = 0; i < CELL_KEYS.length; i++)
+            CELL_KEYS[i] = random.nextLong();
+        long[] microKeys = new long[9];
+        for (int i = 0; i < microKeys.length; i++)
+            microKeys[i] = random.nextLong();
+        for (int mask = 0; mask < ACTIVE_KEYS.length; mask++) {
+            long key = 0;
+            for (int micro = 0; micro < 9; micro++) {
+                if ((mask & (1 << micro)) != 0)
+                    key ^= microKeys[micro];
+            }
+            ACTIVE_KEYS[mask] = key;
+        }
+        SIDE_KEY = random.nextLong();
+        for (int player = 0; player < 2; player++)
+            for (int micro = 0; micro < 9; micro++)
+                for (int cells = 0; cells < 512; cells++) {
+                    long key = 0;
+                    for (int bit = 0; bit < 9; bit++) {
+                        if ((cells & (1 << bit)) != 0) {
+                            int x = micro / 3 * 3 + bit / 3;
+                            int y = micro % 3 * 3 + bit % 3;
+                            key ^= CELL_KEYS[player * 81 + x * 9 + y];
+                        }
+                    }
+                    MICRO_KEYS[player][micro][cells] = key;
+                }
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * @return The key of the empty board with player 0 to move
+     */
+    public static long emptyBoard() {
+        return ACTIVE_KEYS[0x1FF];
+    }
+
+    /**
+     * Computes the key of a state from scratch.
+     * @param state The state
+     * @return The key
+     */
+    public static long compute(IGameState state) {
+        IField field = state.getField();
+        long key = 0;
+        for (int x = 0; x < 9; x++)
+            for (int y = 0; y < 9; y++) {
+                String id = field.getPlayerId(x, y);
+                if (id.equals("0"))
+                    key ^= CELL_KEYS[x * 9 + y];
+                else if (id.equals("1"))
+                    key ^= CELL_KEYS[81 + x * 9 + y];
+            }
+        key ^= ACTIVE_KEYS[activeMask(field)];
+        if (state.getMoveNumber() % 2 == 1)
+            key ^= SIDE_KEY;
+        return key;
+    }
+
+    /**
+     * Computes the key the state would have if the board was turned by a
+     * symmetry, without turning it. With the symmetry from
+     * {@link Symmetry#canonicalSymmetry(IField)} this gives the same key for
+     * all 8 orientations of a position. A BitboardField takes 19 table lookups.
+     * @param state The state
+     * @param symmetry 0 to 7, see Symmetry
+     * @return The key of the turned state
+     */
+    public static long compute(IGameState state, int symmetry) {
+        IField field = state.getField();
+        long key = 0;
+        if (field instanceof BitboardField) {
+            BitboardField bitboard = (BitboardField) field;
+            for (int micro = 0; micro < 9; micro++) {
+                int turned = Symmetry.mapMicro(symmetry, micro);
+                key ^= MICRO_KEYS[0][turned][Symmetry.mapMask(symmetry, bitboard.getCells(0, micro))]
+                        ^ MICRO_KEYS[1][turned][Symmetry.mapMask(symmetry, bitboard.getCells(1, micro))];
+            }
+        }
+        else {
+            for (int x = 0; x < 9; x++)
+                for (int y = 0; y < 9; y++) {
+                    String id = field.getPlayerId(x, y);
+                    if (id.equals("0"))
+                        key ^= CELL_KEYS[Symmetry.mapCell(symmetry, x * 9 + y)];
+                    else if (id.equals("1"))
+                        key ^= CELL_KEYS[81 + Symmetry.mapCell(symmetry, x * 9 + y)];
+                }
+        }
+        key ^= ACTIVE_KEYS[Symmetry.mapMask(symmetry, activeMask(field))];
+        if (state.getMoveNumber() % 2 == 1)
+            key ^= SIDE_KEY;
+        return key;
+    }
+
+    /**
+     * Updates a key for a move.
+     * @param key The key before the move
+     * @param player The player making the move
+     * @param position The move, x * 9 + y
+     * @param activeBefore Active microboards before the move
+     * @param activeAfter Active microboards after the move
+     * @return The key after the move. Calling it again with the key after the
+     * move gives back the key before it.
+     */
+    public static long move(long key, int player, int position, int activeBefore, int activeAfter) {
+        return key ^ CELL_KEYS[player * 81 + position]
+                ^ ACTIVE_KEYS[activeBefore] ^ ACTIVE_KEYS[activeAfter]
+                ^ SIDE_KEY;
+    }
+
+    /**
+     * @return The 9-bit mask of microboards available for play, bit x * 3 + y of the macroboard
+     */
+    public static int activeMask(IField field) {
+        if (field instanceof BitboardField)
+            return ((BitboardField) field).getActiveMask();
+        return BoardMasks.activeMask(field.getMacroboard());
+    }
+}
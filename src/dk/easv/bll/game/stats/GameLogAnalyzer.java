@@ -0,0 +1,92 @@
+package dk.easv.bll.game.stats;
+
+import dk.easv.dal.GameRecordLog;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Builds a GameLogReport over a GameRecordLog without loading it.
+ *
+ * The chunks of the log are handed out one at a time from a shared counter
+ * to a pool of threads. Every thread streams its chunks into its own report,
+ * and the reports are merged at the end, so memory use doesn't grow with the
+ * size of the log.
+ */
+public class GameLogAnalyzer {
+
+    private final GameRecordLog log;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private Predicate<GameRecord> filter = record -> true;
+
+    /**
+     * @param log The log to read
+     */
+    public GameLogAnalyzer(GameRecordLog log) {
+        this.log = log;
+    }
+
+    public void setThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("At least one thread is needed");
+        this.threads = threads;
+    }
+
+    /**
+     * @param filter Only games it accepts are counted, e.g. the games of one bot
+     */
+    public void setFilter(Predicate<GameRecord> filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * Reads the whole log.
+     * @return The report over the games accepted by the filter
+     * @throws IOException If the log can't be read
+     * @throws InterruptedException If the calling thread is interrupted
+     */
+    public GameLogReport run() throws IOException, InterruptedException {
+        int chunks = log.getChunkCount();
+        AtomicInteger nextChunk = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "Game log analyzer");
+            thread.setDaemon(true); // don't keep the application alive
+            return thread;
+        });
+        List<Callable<GameLogReport>> tasks = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            tasks.add(() -> {
+                GameLogReport report = new GameLogReport();
+                int chunk;
+                while ((chunk = nextChunk.getAndIncrement()) < chunks) {
+                    log.forEach(chunk, record -> {
+                        if (filter.test(record))
+                            report.add(record);
+                    });
+                }
+                return report;
+            });
+        }
+
+        GameLogReport total = new GameLogReport();
+        try {
+            for (Future<GameLogReport> report : executor.invokeAll(tasks))
+                total.merge(report.get());
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException)
+                throw (IOException) ex.getCause();
+            throw new IllegalStateException("Reading the log failed", ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,223 @@
+package dk.easv.bll.game.stats;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Aggregate statistics over game records: outcomes, game length, the score
+ * of the starting player by first move, which microboard decided the game,
+ * and timeouts per bot.
+ *
+ * A report only holds counters, so its size doesn't depend on the number of
+ * games. It is not thread safe; give every thread its own report and merge
+ * them at the end.
+ */
+public class GameLogReport {
+
+    // Indexed by GameResult.Winner ordinal
+    private final long[] outcomes = new long[3];
+    private long games;
+    private long moves;
+    private long forfeits;
+    private int shortest = Integer.MAX_VALUE;
+    private int longest;
+    // Outcomes by first move: cell * 3 + winner ordinal
+    private final long[] firstMoves = new long[81 * 3];
+    // Games won on the board, by the microboard of the winning move
+    private final long[] decidingMicroboards = new long[9];
+    // Per bot: games, moves, timeouts, games with a timeout
+    private final Map<String, long[]> bots = new TreeMap<>();
+
+    /**
+     * Adds a game to the counters.
+     * @param record The game
+     */
+    public void add(GameRecord record) {
+        int moveCount = record.getMoveCount();
+        int winner = record.getWinner().ordinal();
+        games++;
+        moves += moveCount;
+        outcomes[winner]++;
+        shortest = Math.min(shortest, moveCount);
+        longest = Math.max(longest, moveCount);
+        if (record.isForfeit())
+            forfeits++;
+        if (moveCount > 0)
+            firstMoves[record.getMove(0) * 3 + winner]++;
+        if (moveCount > 0 && !record.isForfeit() && record.getWinner() != GameResult.Winner.tie) {
+            // The winning move completes a line of microboards, so it wins its own microboard
+            int last = record.getMove(moveCount - 1);
+            decidingMicroboards[(last / 9 / 3) * 3 + (last % 9) / 3]++;
+        }
+        addBot(record.getPlayer0(), (moveCount + 1) / 2, record.getTimeouts(0));
+        addBot(record.getPlayer1(), moveCount / 2, record.getTimeouts(1));
+    }
+
+    /**
+     * Adds the counters of another report to this one.
+     * @param other The other report
+     */
+    public void merge(GameLogReport other) {
+        for (int i = 0; i < outcomes.length; i++)
+            outcomes[i] += other.outcomes[i];
+        games += other.games;
+        moves += other.moves;
+        forfeits += other.forfeits;
+        shortest = Math.min(shortest, other.shortest);
+        longest = Math.max(longest, other.longest);
+        for (int i = 0; i < firstMoves.length; i++)
+            firstMoves[i] += other.firstMoves[i];
+        for (int i = 0; i < decidingMicroboards.length; i++)
+            decidingMicroboards[i] += other.decidingMicroboards[i];
+        for (Map.Entry<String, long[]> entry : other.bots.entrySet()) {
+            long[] counts = bots.computeIfAbsent(entry.getKey(), name -> new long[4]);
+            for (int i = 0; i < counts.length; i++)
+                counts[i] += entry.getValue()[i];
+        }
+    }
+
+    public long getGames() {
+        return games;
+    }
+
+    /**
+     * @param winner The outcome
+     * @return Number of games with the outcome
+     */
+    public long getOutcomes(GameResult.Winner winner) {
+        return outcomes[winner.ordinal()];
+    }
+
+    /**
+     * @return Number of games that ended by a forfeit, e.g. on time
+     */
+    public long getForfeits() {
+        return forfeits;
+    }
+
+    /**
+     * @return The average number of moves per game
+     */
+    public double getAverageLength() {
+        return games == 0 ? 0 : (double) moves / games;
+    }
+
+    public int getShortest() {
+        return games == 0 ? 0 : shortest;
+    }
+
+    public int getLongest() {
+        return longest;
+    }
+
+    /**
+     * @param cell First move as x * 9 + y
+     * @return Number of games that started with the move
+     */
+    public long getFirstMoveGames(int cell) {
+        return firstMoves[cell * 3] + firstMoves[cell * 3 + 1] + firstMoves[cell * 3 + 2];
+    }
+
+    /**
+     * @param cell First move as x * 9 + y
+     * @return Points of the starting player per game after the move, a win is 1 and a tie 1/2,
+     * or -1 if no game started with it
+     */
+    public double getFirstMoveScore(int cell) {
+        long started = getFirstMoveGames(cell);
+        if (started == 0)
+            return -1;
+        return (firstMoves[cell * 3] + firstMoves[cell * 3 + 2] / 2.0) / started;
+    }
+
+    /**
+     * @param microboard Microboard (x / 3) * 3 + y / 3
+     * @return Number of games won on the board by a move in the microboard
+     */
+    public long getDecidingMicroboardCount(int microboard) {
+        return decidingMicroboards[microboard];
+    }
+
+    /**
+     * @return The names of the bots in the games, sorted
+     */
+    public Iterable<String> getBots() {
+        return bots.keySet();
+    }
+
+    public long getBotGames(String bot) {
+        return bots.containsKey(bot) ? bots.get(bot)[0] : 0;
+    }
+
+    public long getBotMoves(String bot) {
+        return bots.containsKey(bot) ? bots.get(bot)[1] : 0;
+    }
+
+    /**
+     * @param bot Name of the bot
+     * @return Moves where the bot used more than the time per move
+     */
+    public long getBotTimeouts(String bot) {
+        return bots.containsKey(bot) ? bots.get(bot)[2] : 0;
+    }
+
+    /**
+     * @param bot Name of the bot
+     * @return Games where the bot used more than the time per move at least once
+     */
+    public long getBotGamesWithTimeout(String bot) {
+        return bots.containsKey(bot) ? bots.get(bot)[3] : 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("Games: %d, player 0 won %d, player 1 won %d, tied %d, forfeits %d%n",
+                games, getOutcomes(GameResult.Winner.player0), getOutcomes(GameResult.Winner.player1),
+                getOutcomes(GameResult.Winner.tie), forfeits));
+        text.append(String.format("Length: average %.1f moves, shortest %d, longest %d%n",
+                getAverageLength(), getShortest(), getLongest()));
+
+        text.append(String.format("%nScore of the starting player by first move (x across, y down):%n"));
+        for (int y = 0; y < 9; y++) {
+            for (int x = 0; x < 9; x++) {
+                double score = getFirstMoveScore(x * 9 + y);
+                text.append(score < 0 ? "     -" : String.format(" %4.1f%%", score * 100));
+                if (x % 3 == 2 && x < 8)
+                    text.append(" |");
+            }
+            text.append(String.format("%n"));
+            if (y % 3 == 2 && y < 8)
+                text.append(String.format("%s%n", "-------------------+-------------------+------------------"));
+        }
+
+        long decided = 0;
+        for (long count : decidingMicroboards)
+            decided += count;
+        text.append(String.format("%nMicroboard of the winning move (x across, y down):%n"));
+        for (int y = 0; y < 3; y++) {
+            for (int x = 0; x < 3; x++)
+                text.append(String.format(" %5.1f%%", decided == 0 ? 0 : 100.0 * decidingMicroboards[x * 3 + y] / decided));
+            text.append(String.format("%n"));
+        }
+
+        text.append(String.format("%nTimeouts per bot:%n"));
+        for (Map.Entry<String, long[]> entry : bots.entrySet()) {
+            long[] counts = entry.getValue();
+            text.append(String.format("%-30s %8d games %10d moves %6d timeouts (%.3f%% of moves, in %.2f%% of games)%n",
+                    entry.getKey(), counts[0], counts[1], counts[2],
+                    counts[1] == 0 ? 0 : 100.0 * counts[2] / counts[1],
+                    counts[0] == 0 ? 0 : 100.0 * counts[3] / counts[0]));
+        }
+        return text.toString();
+    }
+
+    private void addBot(String bot, int botMoves, int timeouts) {
+        long[] counts = bots.computeIfAbsent(bot, name -> new long[4]);
+        counts[0]++;
+        counts[1] += botMoves;
+        counts[2] += timeouts;
+        if (timeouts > 0)
+            counts[3]++;
+    }
+}
@@ -0,0 +1,106 @@
+package dk.easv.bll.game.stats;
+
+/**
+ * A played game with all its moves, as kept in a GameRecordLog.
+ *
+ * Moves are cells x * 9 + y, one byte each, in the order they were played,
+ * starting with player 0. Think times are in microseconds, 0 for moves not
+ * made by a bot.
+ */
+public class GameRecord {
+
+    private final String player0;
+    private final String player1;
+    private final GameResult.Winner winner;
+    private final boolean forfeit;
+    private final long seed;
+    private final byte[] moves;
+    private final int[] thinkTimes;
+    private final int timeouts0;
+    private final int timeouts1;
+
+    /**
+     * The arrays are kept, not copied.
+     * @param player0 Name of the bot that started
+     * @param player1 Name of the other bot
+     * @param winner Outcome of the game
+     * @param forfeit true if the game ended by a forfeit, e.g. on time, rather than on the board
+     * @param seed Seed of the game
+     * @param moves Cells x * 9 + y in the order played
+     * @param thinkTimes Think time of every move in microseconds
+     * @param timeouts0 Moves where player 0 used more than the time per move
+     * @param timeouts1 Moves where player 1 used more than the time per move
+     */
+    public GameRecord(String player0, String player1, GameResult.Winner winner, boolean forfeit, long seed,
+            byte[] moves, int[] thinkTimes, int timeouts0, int timeouts1) {
+        if (moves.length != thinkTimes.length)
+            throw new IllegalArgumentException("A think time is needed for every move");
+        this.player0 = player0;
+        this.player1 = player1;
+        this.winner = winner;
+        this.forfeit = forfeit;
+        this.seed = seed;
+        this.moves = moves;
+        this.thinkTimes = thinkTimes;
+        this.timeouts0 = timeouts0;
+        this.timeouts1 = timeouts1;
+    }
+
+    public String getPlayer0() {
+        return player0;
+    }
+
+    public String getPlayer1() {
+        return player1;
+    }
+
+    public GameResult.Winner getWinner() {
+        return winner;
+    }
+
+    /**
+     * @return true if the game ended by a forfeit rather than on the board
+     */
+    public boolean isForfeit() {
+        return forfeit;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getMoveCount() {
+        return moves.length;
+    }
+
+    /**
+     * @param moveNumber 0 for the first move
+     * @return The cell x * 9 + y of the move
+     */
+    public int getMove(int moveNumber) {
+        return moves[moveNumber];
+    }
+
+    /**
+     * @param moveNumber 0 for the first move
+     * @return Think time of the move in microseconds
+     */
+    public int getThinkTime(int moveNumber) {
+        return thinkTimes[moveNumber];
+    }
+
+    /**
+     * @param player 0 or 1
+     * @return Moves where the player used more than the time per move
+     */
+    public int getTimeouts(int player) {
+        return player == 0 ? timeouts0 : timeouts1;
+    }
+
+    /**
+     * @return The result without the moves
+     */
+    public GameResult toGameResult() {
+        return new GameResult(player0, player1, winner);
+    }
+}
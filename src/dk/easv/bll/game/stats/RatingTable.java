@@ -0,0 +1,191 @@
+package dk.easv.bll.game.stats;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Glicko ratings of a group of bots, updated after every game.
+ *
+ * Every bot starts at 1500 with a rating deviation (RD) of 350. The RD says
+ * how sure the rating is and shrinks as the bot plays; the rating is within
+ * 1.96 RD of the true strength with about 95% confidence. Ratings are on the
+ * Elo scale, so 100 points apart means the stronger bot scores about 64%.
+ *
+ * Games can be added from several threads.
+ */
+public class RatingTable {
+
+    public static final double INITIAL_RATING = 1500;
+    public static final double INITIAL_RD = 350;
+
+    private static final double Q = Math.log(10) / 400;
+
+    /**
+     * The rating of one bot at one point in time.
+     */
+    public static class Rating {
+        private final String name;
+        private final double rating;
+        private final double deviation;
+        private final int wins;
+        private final int losses;
+        private final int ties;
+
+        public Rating(String name, double rating, double deviation, int wins, int losses, int ties) {
+            this.name = name;
+            this.rating = rating;
+            this.deviation = deviation;
+            this.wins = wins;
+            this.losses = losses;
+            this.ties = ties;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public double getRating() {
+            return rating;
+        }
+
+        /**
+         * @return The rating deviation, the uncertainty of the rating
+         */
+        public double getDeviation() {
+            return deviation;
+        }
+
+        /**
+         * @return Lower end of the 95% confidence interval
+         */
+        public double getLow() {
+            return rating - 1.96 * deviation;
+        }
+
+        /**
+         * @return Upper end of the 95% confidence interval
+         */
+        public double getHigh() {
+            return rating + 1.96 * deviation;
+        }
+
+        public int getWins() {
+            return wins;
+        }
+
+        public int getLosses() {
+            return losses;
+        }
+
+        public int getTies() {
+            return ties;
+        }
+
+        public int getGames() {
+            return wins + losses + ties;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-30s %6.0f [%4.0f, %4.0f] w/l/t %d/%d/%d",
+                    name, rating, getLow(), getHigh(), wins, losses, ties);
+        }
+    }
+
+    private final String[] names;
+    private final double[] ratings;
+    private final double[] deviations;
+    private final int[] wins;
+    private final int[] losses;
+    private final int[] ties;
+
+    /**
+     * @param names The names of the bots, their index is used in addGame
+     */
+    public RatingTable(List<String> names) {
+        int count = names.size();
+        this.names = names.toArray(new String[0]);
+        ratings = new double[count];
+        deviations = new double[count];
+        wins = new int[count];
+        losses = new int[count];
+        ties = new int[count];
+        for (int i = 0; i < count; i++) {
+            ratings[i] = INITIAL_RATING;
+            deviations[i] = INITIAL_RD;
+        }
+    }
+
+    /**
+     * Updates the ratings of both bots after a game.
+     * @param bot Index of a bot
+     * @param opponent Index of the other bot
+     * @param score Result for the bot: 1 win, 0.5 tie, 0 loss
+     */
+    public synchronized void addGame(int bot, int opponent, double score) {
+        double rating = ratings[bot];
+        double deviation = deviations[bot];
+        update(bot, ratings[opponent], deviations[opponent], score);
+        update(opponent, rating, deviation, 1 - score);
+        if (score == 1) {
+            wins[bot]++;
+            losses[opponent]++;
+        }
+        else if (score == 0) {
+            losses[bot]++;
+            wins[opponent]++;
+        }
+        else {
+            ties[bot]++;
+            ties[opponent]++;
+        }
+    }
+
+    /**
+     * @param bot Index of a bot
+     * @return The current rating of the bot
+     */
+    public synchronized Rating getRating(int bot) {
+        return new Rating(names[bot], ratings[bot], deviations[bot], wins[bot], losses[bot], ties[bot]);
+    }
+
+    /**
+     * @return The current ratings, best first
+     */
+    public synchronized List<Rating> getRatings() {
+        List<Rating> result = new ArrayList<>();
+        for (int i = 0; i < names.length; i++)
+            result.add(getRating(i));
+        result.sort(Comparator.comparingDouble(Rating::getRating).reversed());
+        return result;
+    }
+
+    /**
+     * @param bot Index of a bot
+     * @param opponent Index of the other bot
+     * @return Expected score of the bot against the opponent, from 0 to 1
+     */
+    public synchronized double expectedScore(int bot, int opponent) {
+        double combined = Math.sqrt(deviations[bot] * deviations[bot] + deviations[opponent] * deviations[opponent]);
+        return expected(ratings[bot], ratings[opponent], combined);
+    }
+
+    // One game as a Glicko rating period
+    private void update(int bot, double opponentRating, double opponentDeviation, double score) {
+        double g = g(opponentDeviation);
+        double expected = expected(ratings[bot], opponentRating, opponentDeviation);
+        double dSquaredInverse = Q * Q * g * g * expected * (1 - expected);
+        double precision = 1 / (deviations[bot] * deviations[bot]) + dSquaredInverse;
+        ratings[bot] += Q / precision * g * (score - expected);
+        deviations[bot] = Math.sqrt(1 / precision);
+    }
+
+    private static double expected(double rating, double opponentRating, double opponentDeviation) {
+        return 1 / (1 + Math.pow(10, -g(opponentDeviation) * (rating - opponentRating) / 400));
+    }
+
+    private static double g(double deviation) {
+        return 1 / Math.sqrt(1 + 3 * Q * Q * deviation * deviation / (Math.PI * Math.PI));
+    }
+}
@@ -0,0 +1,148 @@
+package dk.easv.bll.game.stats;
+
+import dk.easv.bll.game.SimulationRunner;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Counts the results of a simulation from many threads at once.
+ *
+ * The counters are LongAdders, which spread the updates of different threads
+ * over separate cells, so no result is lost and the threads don't wait for
+ * each other. A snapshot taken after the simulation is done is the exact final
+ * tally; one taken while it runs is a live view.
+ */
+public class ResultAggregator implements SimulationRunner.ResultListener {
+
+    /**
+     * The counters at one point in time.
+     */
+    public static class Snapshot {
+        private final long bot1Wins;
+        private final long bot2Wins;
+        private final long ties;
+        private final long bot1WinsStarting;
+        private final long bot2WinsStarting;
+
+        public Snapshot(long bot1Wins, long bot2Wins, long ties, long bot1WinsStarting, long bot2WinsStarting) {
+            this.bot1Wins = bot1Wins;
+            this.bot2Wins = bot2Wins;
+            this.ties = ties;
+            this.bot1WinsStarting = bot1WinsStarting;
+            this.bot2WinsStarting = bot2WinsStarting;
+        }
+
+        public long getBot1Wins() {
+            return bot1Wins;
+        }
+
+        public long getBot2Wins() {
+            return bot2Wins;
+        }
+
+        public long getTies() {
+            return ties;
+        }
+
+        /**
+         * @return Wins of bot 1 in the games it started
+         */
+        public long getBot1WinsStarting() {
+            return bot1WinsStarting;
+        }
+
+        /**
+         * @return Wins of bot 2 in the games it started
+         */
+        public long getBot2WinsStarting() {
+            return bot2WinsStarting;
+        }
+
+        public long getGames() {
+            return bot1Wins + bot2Wins + ties;
+        }
+
+        /**
+         * @return Points of bot 1 per game, a win is 1 and a tie 1/2
+         */
+        public double getBot1Score() {
+            long games = getGames();
+            return games == 0 ? 0.5 : (bot1Wins + ties / 2.0) / games;
+        }
+
+        @Override
+        public String toString() {
+            return "w/w/t " + bot1Wins + "/" + bot2Wins + "/" + ties;
+        }
+    }
+
+    private final LongAdder bot1Wins = new LongAdder();
+    private final LongAdder bot2Wins = new LongAdder();
+    private final LongAdder ties = new LongAdder();
+    private final LongAdder bot1WinsStarting = new LongAdder();
+    private final LongAdder bot2WinsStarting = new LongAdder();
+    private ScheduledExecutorService scheduler;
+
+    @Override
+    public void gameFinished(GameResult result, boolean bot1Started) {
+        if (result.getWinner() == GameResult.Winner.tie) {
+            ties.increment();
+        }
+        else if ((result.getWinner() == GameResult.Winner.player0) == bot1Started) {
+            bot1Wins.increment();
+            if (bot1Started)
+                bot1WinsStarting.increment();
+        }
+        else {
+            bot2Wins.increment();
+            if (!bot1Started)
+                bot2WinsStarting.increment();
+        }
+    }
+
+    /**
+     * @return The current counts. Exact once no more results are added.
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(bot1Wins.sum(), bot2Wins.sum(), ties.sum(),
+                bot1WinsStarting.sum(), bot2WinsStarting.sum());
+    }
+
+    /**
+     * Sends a snapshot to the listener at a fixed rate, until stopLiveUpdates is called.
+     * @param periodMillis Time between snapshots
+     * @param listener Receives the snapshots, on a background thread
+     */
+    public synchronized void startLiveUpdates(long periodMillis, Consumer<Snapshot> listener) {
+        stopLiveUpdates();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Result snapshots");
+            thread.setDaemon(true); // don't keep the application alive
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(() -> listener.accept(snapshot()),
+                periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopLiveUpdates() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Sets all counters to 0. Only exact when no results are being added.
+     */
+    public void reset() {
+        bot1Wins.reset();
+        bot2Wins.reset();
+        ties.reset();
+        bot1WinsStarting.reset();
+        bot2WinsStarting.reset();
+    }
+}
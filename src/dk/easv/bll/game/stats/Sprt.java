@@ -0,0 +1,127 @@
+package dk.easv.bll.game.stats;
+
+import dk.easv.bll.game.SimulationRunner;
+
+import java.util.function.Consumer;
+
+/**
+ * Sequential probability ratio test: decides after every game whether bot 1
+ * is stronger than bot 2, and stops as soon as the games played are enough.
+ *
+ * The test weighs two hypotheses about how much stronger bot 1 is, on the Elo
+ * scale: H0 that it is elo0 stronger, H1 that it is elo1 stronger. The log
+ * likelihood ratio (LLR) of the results is compared to bounds given by the
+ * error rates: alpha is the chance of accepting H1 when H0 is true, beta the
+ * chance of accepting H0 when H1 is true. The LLR uses the normal
+ * approximation of the score per game (a win 1, a tie 1/2, a loss 0),
+ * the same as chess engine testing frameworks use.
+ *
+ * Add it as the result listener of a SimulationRunner and cancel the runner
+ * from the decision listener.
+ */
+public class Sprt implements SimulationRunner.ResultListener {
+
+    public enum Decision {
+        Continue,
+        AcceptH0, // bot 1 is closer to elo0 than elo1 stronger
+        AcceptH1  // bot 1 is closer to elo1 than elo0 stronger
+    }
+
+    private final double score0;
+    private final double score1;
+    private final double lowerBound;
+    private final double upperBound;
+    private Consumer<Decision> decisionListener = decision -> {};
+
+    private long wins;
+    private long losses;
+    private long ties;
+    private double llr;
+    private Decision decision = Decision.Continue;
+
+    /**
+     * @param elo0 Elo difference of H0, e.g. 0
+     * @param elo1 Elo difference of H1, e.g. 10
+     * @param alpha Chance of a false H1, e.g. 0.05
+     * @param beta Chance of a false H0, e.g. 0.05
+     */
+    public Sprt(double elo0, double elo1, double alpha, double beta) {
+        if (elo1 <= elo0)
+            throw new IllegalArgumentException("elo1 must be larger than elo0");
+        score0 = expectedScore(elo0);
+        score1 = expectedScore(elo1);
+        lowerBound = Math.log(beta / (1 - alpha));
+        upperBound = Math.log((1 - beta) / alpha);
+    }
+
+    /**
+     * @param listener Called once, on the thread of the deciding game, when the test accepts a hypothesis
+     */
+    public void setDecisionListener(Consumer<Decision> listener) {
+        decisionListener = listener;
+    }
+
+    @Override
+    public void gameFinished(GameResult result, boolean bot1Started) {
+        Decision decided;
+        synchronized (this) {
+            if (decision != Decision.Continue)
+                return; // games that finish after the decision don't count
+            if (result.getWinner() == GameResult.Winner.tie)
+                ties++;
+            else if ((result.getWinner() == GameResult.Winner.player0) == bot1Started)
+                wins++;
+            else
+                losses++;
+            llr = computeLlr();
+            if (llr >= upperBound)
+                decision = Decision.AcceptH1;
+            else if (llr <= lowerBound)
+                decision = Decision.AcceptH0;
+            decided = decision;
+        }
+        if (decided != Decision.Continue)
+            decisionListener.accept(decided);
+    }
+
+    public synchronized Decision getDecision() {
+        return decision;
+    }
+
+    public synchronized double getLlr() {
+        return llr;
+    }
+
+    public double getLowerBound() {
+        return lowerBound;
+    }
+
+    public double getUpperBound() {
+        return upperBound;
+    }
+
+    public synchronized long getGames() {
+        return wins + losses + ties;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("SPRT %s | LLR %.2f [%.2f, %.2f] | w/l/t %d/%d/%d",
+                decision, llr, lowerBound, upperBound, wins, losses, ties);
+    }
+
+    private double computeLlr() {
+        double games = wins + losses + ties;
+        double score = (wins + ties / 2.0) / games;
+        // One extra game of each result keeps the variance above 0 when all
+        // results are the same, e.g. when one bot wins every game
+        double variance = ((wins + 1) * (1 - score) * (1 - score)
+                + (losses + 1) * score * score
+                + (ties + 1) * (0.5 - score) * (0.5 - score)) / (games + 3);
+        return (score1 - score0) * (2 * score - score0 - score1) * games / (2 * variance);
+    }
+
+    private static double expectedScore(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+}
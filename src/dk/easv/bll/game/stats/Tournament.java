@@ -0,0 +1,278 @@
+package dk.easv.bll.game.stats;
+
+import dk.easv.bll.bot.IBot;
+import dk.easv.bll.game.GameManager;
+import dk.easv.bll.game.SimulationRunner;
+import dk.easv.dal.GameRecordLog;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Plays a tournament between bots and rates them with a RatingTable.
+ *
+ * In a round robin every bot meets every other bot. In a Swiss tournament
+ * bots meet opponents with about the same score each round, which needs far
+ * fewer games for many bots; a bot doesn't meet the same opponent twice if
+ * it can be avoided, and with an odd number of bots one bot sits out a round.
+ *
+ * A pairing is a match of a number of games with alternating colours. The
+ * pairings of a round are played in parallel, and the ratings are updated
+ * after every game, so they can be read while the tournament runs.
+ */
+public class Tournament {
+
+    public enum Format {
+        RoundRobin,
+        Swiss
+    }
+
+    /**
+     * Receives the result of every pairing, on the thread that played it.
+     */
+    public interface PairingListener {
+        void pairingFinished(String bot1, String bot2, ResultAggregator.Snapshot result);
+    }
+
+    private final List<Class<? extends IBot>> bots;
+    private final List<String> names = new ArrayList<>();
+    private final Format format;
+    private final RatingTable ratings;
+    private int gamesPerPairing = 10;
+    private int rounds;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int timePerMove = 1000;
+    private GameManager.TimeoutPolicy timeoutPolicy = GameManager.TimeoutPolicy.Forfeit;
+    private PairingListener pairingListener = (bot1, bot2, result) -> {};
+    private GameRecordLog recordLog;
+
+    private final Set<SimulationRunner> running = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled = false;
+
+    /**
+     * @param bots The bots, each needs a no-argument constructor. They are named by their class.
+     * @param format RoundRobin or Swiss
+     */
+    public Tournament(List<Class<? extends IBot>> bots, Format format) {
+        if (bots.size() < 2)
+            throw new IllegalArgumentException("A tournament needs at least two bots");
+        this.bots = new ArrayList<>(bots);
+        this.format = format;
+        // Named by class, so a bot is only created when it plays
+        for (Class<? extends IBot> bot : bots)
+            names.add(bot.getSimpleName());
+        ratings = new RatingTable(names);
+        // Enough rounds to separate the bots, about log2 of their number plus one
+        rounds = 32 - Integer.numberOfLeadingZeros(bots.size() - 1) + 1;
+    }
+
+    /**
+     * @param bots Bot instances, e.g. from DynamicBotClassHandler.loadBotList
+     * @return The different classes of the bots, in the order of the list
+     */
+    public static List<Class<? extends IBot>> botClasses(List<IBot> bots) {
+        Set<Class<? extends IBot>> classes = new LinkedHashSet<>();
+        for (IBot bot : bots)
+            classes.add(bot.getClass());
+        return new ArrayList<>(classes);
+    }
+
+    /**
+     * @param games Games per pairing, rounded up to an even number so both bots start equally often
+     */
+    public void setGamesPerPairing(int games) {
+        gamesPerPairing = games + games % 2;
+    }
+
+    /**
+     * @param rounds Number of rounds of a Swiss tournament
+     */
+    public void setRounds(int rounds) {
+        this.rounds = rounds;
+    }
+
+    /**
+     * @param threads Number of pairings played at the same time
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public void setTimePerMove(int milliSeconds) {
+        timePerMove = milliSeconds;
+    }
+
+    public void setTimeoutPolicy(GameManager.TimeoutPolicy timeoutPolicy) {
+        this.timeoutPolicy = timeoutPolicy;
+    }
+
+    public void setPairingListener(PairingListener listener) {
+        pairingListener = listener;
+    }
+
+    /**
+     * @param log Log that every game is appended to, or null for none
+     */
+    public void setRecordLog(GameRecordLog log) {
+        recordLog = log;
+    }
+
+    /**
+     * @return The ratings, updated after every game
+     */
+    public RatingTable getRatingTable() {
+        return ratings;
+    }
+
+    /**
+     * Plays the tournament and returns when it is done or cancelled.
+     * @return The final ratings, best first
+     * @throws InterruptedException If the calling thread is interrupted
+     */
+    public List<RatingTable.Rating> run() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "Tournament");
+            thread.setDaemon(true); // don't keep the application alive
+            return thread;
+        });
+        try {
+            if (format == Format.RoundRobin) {
+                List<int[]> pairings = new ArrayList<>();
+                for (int i = 0; i < bots.size(); i++)
+                    for (int k = i + 1; k < bots.size(); k++)
+                        pairings.add(new int[]{i, k});
+                play(executor, pairings);
+            }
+            else {
+                boolean[][] played = new boolean[bots.size()][bots.size()];
+                double[] byePoints = new double[bots.size()];
+                for (int round = 0; round < rounds && !cancelled; round++)
+                    play(executor, swissPairings(played, byePoints));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return ratings.getRatings();
+    }
+
+    /**
+     * Stops the tournament. Games in progress are abandoned.
+     */
+    public void cancel() {
+        cancelled = true;
+        for (SimulationRunner runner : running)
+            runner.cancel();
+    }
+
+    private void play(ExecutorService executor, List<int[]> pairings) throws InterruptedException {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int[] pairing : pairings)
+            tasks.add(() -> {
+                playPairing(pairing[0], pairing[1]);
+                return null;
+            });
+        for (Future<Void> result : executor.invokeAll(tasks)) {
+            try {
+                result.get();
+            } catch (ExecutionException ex) {
+                throw new IllegalStateException("A pairing failed", ex.getCause());
+            }
+        }
+    }
+
+    // Plays the games of a pairing on the calling thread
+    private void playPairing(int bot1, int bot2) {
+        if (cancelled)
+            return;
+        SimulationRunner runner = new SimulationRunner(bots.get(bot1), bots.get(bot2), gamesPerPairing, 1);
+        runner.setTimePerMove(timePerMove);
+        runner.setTimeoutPolicy(timeoutPolicy);
+        runner.setRecordLog(recordLog);
+        ResultAggregator results = new ResultAggregator();
+        runner.setResultListener((result, bot1Started) -> {
+            results.gameFinished(result, bot1Started);
+            double score = result.getWinner() == GameResult.Winner.tie ? 0.5
+                    : (result.getWinner() == GameResult.Winner.player0) == bot1Started ? 1 : 0;
+            ratings.addGame(bot1, bot2, score);
+        });
+        running.add(runner);
+        if (cancelled)
+            runner.cancel();
+        runner.run();
+        running.remove(runner);
+        if (!cancelled)
+            pairingListener.pairingFinished(names.get(bot1), names.get(bot2), results.snapshot());
+    }
+
+    // Pairs the bots in order of points, then rating, each with the next one it hasn't met yet.
+    // When that leaves bots that have all met, earlier pairings are changed; only
+    // when no pairing without repeats exists at all, bots meet again.
+    private List<int[]> swissPairings(boolean[][] played, double[] byePoints) {
+        List<Integer> order = new ArrayList<>();
+        double[] points = new double[bots.size()];
+        double[] rating = new double[bots.size()];
+        for (int i = 0; i < bots.size(); i++) {
+            RatingTable.Rating r = ratings.getRating(i);
+            points[i] = r.getWins() + r.getTies() / 2.0 + byePoints[i];
+            rating[i] = r.getRating();
+            order.add(i);
+        }
+        order.sort(Comparator.<Integer>comparingDouble(i -> -points[i]).thenComparingDouble(i -> -rating[i]));
+
+        if (order.size() % 2 == 1) {
+            // The lowest ranked bot that hasn't had a bye sits out
+            int bye = order.get(order.size() - 1);
+            for (int i = order.size() - 1; i >= 0; i--) {
+                if (byePoints[order.get(i)] == 0) {
+                    bye = order.get(i);
+                    break;
+                }
+            }
+            byePoints[bye] += gamesPerPairing / 2.0; // scored as an even match
+            order.remove(Integer.valueOf(bye));
+        }
+
+        List<int[]> pairings = new ArrayList<>();
+        if (!pairWithoutRepeats(new ArrayList<>(order), played, pairings)) {
+            // Each bot meets the next one, again if need be
+            pairings.clear();
+            for (int i = 0; i < order.size(); i += 2)
+                pairings.add(new int[]{order.get(i), order.get(i + 1)});
+        }
+        for (int[] pairing : pairings) {
+            played[pairing[0]][pairing[1]] = true;
+            played[pairing[1]][pairing[0]] = true;
+        }
+        return pairings;
+    }
+
+    // Pairs the first bot with the next one it hasn't met that leaves the rest
+    // pairable too, so the result is the greedy pairing when that works
+    private boolean pairWithoutRepeats(List<Integer> order, boolean[][] played, List<int[]> pairings) {
+        if (order.isEmpty())
+            return true;
+        int bot = order.remove(0);
+        for (int i = 0; i < order.size(); i++) {
+            int other = order.get(i);
+            if (played[bot][other])
+                continue;
+            order.remove(i);
+            pairings.add(new int[]{bot, other});
+            if (pairWithoutRepeats(order, played, pairings))
+                return true;
+            pairings.remove(pairings.size() - 1);
+            order.add(i, other);
+        }
+        order.add(0, bot);
+        return false;
+    }
+}
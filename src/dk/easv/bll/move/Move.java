@@ -1,7 +1,5 @@
 package dk.easv.bll.move;
 
-import java.util.Objects;
-
 public class Move implements IMove{
     int x=0;
     int y=0;
@@ -44,6 +42,6 @@ public class Move implements IMove{
 
     @Override
     public int hashCode() {
-        return Objects.hash(x, y);
+        return x * 9 + y; // unique on the board, no boxing
     }
 }
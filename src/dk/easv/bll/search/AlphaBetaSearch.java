@@ -0,0 +1,306 @@
+package dk.easv.bll.search;
+
+import dk.easv.bll.field.BitboardField;
+import dk.easv.bll.field.MicroboardTables;
+import dk.easv.bll.field.Symmetry;
+import dk.easv.bll.game.GameManager;
+import dk.easv.bll.game.GameState;
+import dk.easv.bll.game.IGameState;
+import dk.easv.bll.game.Zobrist;
+
+import java.util.Arrays;
+
+/**
+ * Negamax alpha-beta search with iterative deepening within a time budget.
+ *
+ * The search runs on one bitboard-backed GameManager with makeMove/unmakeMove,
+ * so nothing is copied or allocated per node. Moves are ordered by the
+ * transposition table move, then killer moves, then the history heuristic.
+ * An instance keeps its table between searches and is not thread safe.
+ *
+ * Positions in the first plies are stored in their canonical orientation
+ * (see Symmetry), so lines that are mirror images of each other share
+ * entries. Later positions are rarely symmetric and use the plain key.
+ *
+ * Moves are encoded as x * 9 + y.
+ */
+public class AlphaBetaSearch {
+
+    /** Score of a won game, minus the number of plies to the win */
+    public static final int WIN_SCORE = 1_000_000;
+
+    private static final int MAX_PLY = 82;
+    private static final int INFINITY = WIN_SCORE + 1;
+    // Positions with fewer moves than this are stored in their canonical orientation
+    private static final int SYMMETRY_PLIES = 12;
+    // Value of owning a microboard: center, corners, edges
+    private static final int[] MICRO_WEIGHTS = {3, 2, 3, 2, 4, 2, 3, 2, 3};
+
+    private final TranspositionTable table;
+    private final int[][] moves = new int[MAX_PLY][81];
+    private final int[][] moveScores = new int[MAX_PLY][81];
+    private final int[][] killers = new int[MAX_PLY][2];
+    private final int[] history = new int[2 * 81];
+    // The symmetry of the table key at each ply
+    private final int[] symmetries = new int[MAX_PLY];
+
+    private GameManager game;
+    private BitboardField field;
+    private long deadline;
+    private boolean stopped;
+    private long nodes;
+    private int completedDepth;
+    private int bestScore;
+
+    /**
+     * @param tableSizeBits The transposition table holds 2^tableSizeBits entries of 16 bytes
+     */
+    public AlphaBetaSearch(int tableSizeBits) {
+        table = new TranspositionTable(tableSizeBits);
+    }
+
+    /**
+     * Searches the position until the time is used or the game is solved.
+     * @param state The position, with the player to move given by the move number
+     * @param timeMillis Time budget for the search
+     * @return The best move found (x * 9 + y), or -1 if there is no legal move
+     */
+    public int search(IGameState state, long timeMillis) {
+        deadline = System.nanoTime() + timeMillis * 1_000_000;
+        stopped = false;
+        nodes = 0;
+        completedDepth = 0;
+        bestScore = 0;
+        setUp(state);
+        table.newSearch();
+        for (int[] killer : killers) {
+            killer[0] = -1;
+            killer[1] = -1;
+        }
+        for (int i = 0; i < history.length; i++)
+            history[i] >>= 2; // keep a little knowledge from the previous search
+
+        int count = field.getAvailableMoves(moves[0]);
+        if (count == 0 || game.getGameOver() != GameManager.GameOverState.Active)
+            return -1;
+        int bestMove = moves[0][0];
+
+        for (int depth = 1; depth < MAX_PLY; depth++) {
+            int score = negamax(depth, 0, -INFINITY, INFINITY);
+            if (stopped)
+                break;
+            long entry = table.probe(tableKey(0));
+            if (entry != TranspositionTable.MISS && TranspositionTable.getMove(entry) != TranspositionTable.NO_MOVE)
+                bestMove = Symmetry.unmapCell(symmetries[0], TranspositionTable.getMove(entry));
+            completedDepth = depth;
+            bestScore = score;
+            if (Math.abs(score) > WIN_SCORE - MAX_PLY || depth >= 81 - state.getMoveNumber())
+                break; // solved
+        }
+        return bestMove;
+    }
+
+    /**
+     * Forgets everything learned in earlier searches, e.g. before a new game.
+     */
+    public void clear() {
+        table.clear();
+        Arrays.fill(history, 0);
+    }
+
+    /**
+     * @return The deepest iteration completed by the last search
+     */
+    public int getCompletedDepth() {
+        return completedDepth;
+    }
+
+    /**
+     * @return The score of the last completed iteration, from the point of view of the player to move
+     */
+    public int getBestScore() {
+        return bestScore;
+    }
+
+    /**
+     * @return Number of positions visited by the last search
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    private void setUp(IGameState state) {
+        GameState copy;
+        if (state.getField() instanceof BitboardField)
+            copy = new GameState(state);
+        else {
+            BitboardField bitboard = new BitboardField();
+            bitboard.setBoard(state.getField().getBoard());
+            bitboard.setMacroboard(state.getField().getMacroboard());
+            copy = new GameState(bitboard);
+            copy.setMoveNumber(state.getMoveNumber());
+            copy.setRoundNumber(state.getRoundNumber());
+            copy.setZobristKey(Zobrist.compute(copy));
+        }
+        game = new GameManager(copy);
+        game.setCurrentPlayer(state.getMoveNumber() % 2);
+        field = (BitboardField) copy.getField();
+    }
+
+    private int negamax(int depth, int ply, int alpha, int beta) {
+        if ((++nodes & 1023) == 0 && System.nanoTime() > deadline)
+            stopped = true;
+        if (stopped)
+            return 0;
+
+        GameManager.GameOverState gameOver = game.getGameOver();
+        if (gameOver == GameManager.GameOverState.Win)
+            return -(WIN_SCORE - ply); // the player who just moved won
+        if (gameOver == GameManager.GameOverState.Tie)
+            return 0;
+        if (depth == 0)
+            return evaluate();
+
+        long key = tableKey(ply);
+        int alphaBefore = alpha;
+        int ttMove = -1;
+        long entry = table.probe(key);
+        if (entry != TranspositionTable.MISS) {
+            int move = TranspositionTable.getMove(entry);
+            ttMove = move == TranspositionTable.NO_MOVE ? -1 : Symmetry.unmapCell(symmetries[ply], move);
+            if (ply > 0 && TranspositionTable.getDepth(entry) >= depth) {
+                int score = fromTable(TranspositionTable.getScore(entry), ply);
+                int flag = TranspositionTable.getFlag(entry);
+                if (flag == TranspositionTable.EXACT)
+                    return score;
+                if (flag == TranspositionTable.LOWER_BOUND)
+                    alpha = Math.max(alpha, score);
+                else
+                    beta = Math.min(beta, score);
+                if (alpha >= beta)
+                    return score;
+            }
+        }
+
+        int player = game.getCurrentPlayer();
+        int[] plyMoves = moves[ply];
+        int count = field.getAvailableMoves(plyMoves);
+        orderMoves(plyMoves, moveScores[ply], count, ttMove, ply, player);
+
+        int best = -INFINITY;
+        int bestMove = TranspositionTable.NO_MOVE;
+        for (int i = 0; i < count; i++) {
+            int move = plyMoves[i];
+            long undo = game.makeMove(move / 9, move % 9);
+            int score = -negamax(depth - 1, ply + 1, -beta, -alpha);
+            game.unmakeMove(undo);
+            if (stopped)
+                return 0;
+
+            if (score > best) {
+                best = score;
+                bestMove = move;
+                if (score > alpha)
+                    alpha = score;
+            }
+            if (alpha >= beta) {
+                if (killers[ply][0] != move) {
+                    killers[ply][1] = killers[ply][0];
+                    killers[ply][0] = move;
+                }
+                history[player * 81 + move] += depth * depth;
+                break;
+            }
+        }
+
+        int flag = best <= alphaBefore ? TranspositionTable.UPPER_BOUND
+                : best >= beta ? TranspositionTable.LOWER_BOUND
+                : TranspositionTable.EXACT;
+        if (bestMove != TranspositionTable.NO_MOVE)
+            bestMove = Symmetry.mapCell(symmetries[ply], bestMove);
+        table.store(key, toTable(best, ply), depth, flag, bestMove);
+        return best;
+    }
+
+    // The key of the position, turned to its canonical orientation in the first plies
+    private long tableKey(int ply) {
+        IGameState state = game.getCurrentState();
+        if (state.getMoveNumber() >= SYMMETRY_PLIES) {
+            symmetries[ply] = Symmetry.IDENTITY;
+            return state.getZobristKey();
+        }
+        symmetries[ply] = Symmetry.canonicalSymmetry(field);
+        return Zobrist.compute(state, symmetries[ply]);
+    }
+
+    // Sorts the moves best first: table move, killers, then by history
+    private void orderMoves(int[] plyMoves, int[] scores, int count, int ttMove, int ply, int player) {
+        for (int i = 0; i < count; i++) {
+            int move = plyMoves[i];
+            if (move == ttMove)
+                scores[i] = Integer.MAX_VALUE;
+            else if (move == killers[ply][0])
+                scores[i] = Integer.MAX_VALUE - 2;
+            else if (move == killers[ply][1])
+                scores[i] = Integer.MAX_VALUE - 3;
+            else
+                scores[i] = history[player * 81 + move];
+        }
+        for (int i = 1; i < count; i++) {
+            int move = plyMoves[i];
+            int score = scores[i];
+            int k = i - 1;
+            while (k >= 0 && scores[k] < score) {
+                plyMoves[k + 1] = plyMoves[k];
+                scores[k + 1] = scores[k];
+                k--;
+            }
+            plyMoves[k + 1] = move;
+            scores[k + 1] = score;
+        }
+    }
+
+    // Mate scores are stored relative to the position, not the root
+    private static int toTable(int score, int ply) {
+        if (score > WIN_SCORE - MAX_PLY) return score + ply;
+        if (score < -WIN_SCORE + MAX_PLY) return score - ply;
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score > WIN_SCORE - MAX_PLY) return score - ply;
+        if (score < -WIN_SCORE + MAX_PLY) return score + ply;
+        return score;
+    }
+
+    /**
+     * Heuristic score from the point of view of the player to move.
+     */
+    private int evaluate() {
+        int player = game.getCurrentPlayer();
+        return evaluate(player) - evaluate(1 - player);
+    }
+
+    private int evaluate(int player) {
+        int won = field.getWonMask(player);
+        int blocked = field.getWonMask(1 - player) | field.getTiedMask();
+        int macro = MicroboardTables.index(won, blocked);
+        int score = 400 * MicroboardTables.getThreats(macro) + 40 * MicroboardTables.getOpenLines(macro);
+
+        int decided = won | blocked;
+        for (int micro = 0; micro < 9; micro++) {
+            if ((won & (1 << micro)) != 0) {
+                score += 100 * MICRO_WEIGHTS[micro];
+                continue;
+            }
+            if ((decided & (1 << micro)) != 0)
+                continue;
+            int own = field.getCells(player, micro);
+            int index = MicroboardTables.index(own, field.getCells(1 - player, micro));
+            score += 8 * MICRO_WEIGHTS[micro] * MicroboardTables.getThreats(index);
+            if ((own & 0x10) != 0)
+                score += 2; // center cell
+        }
+        return score;
+    }
+}
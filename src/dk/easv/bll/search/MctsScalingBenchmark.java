@@ -0,0 +1,96 @@
+package dk.easv.bll.search;
+
+import dk.easv.bll.bot.IBot;
+import dk.easv.bll.bot.MctsBot;
+import dk.easv.bll.bot.ParallelMctsBot;
+import dk.easv.bll.field.BitboardField;
+import dk.easv.bll.game.GameManager;
+import dk.easv.bll.game.GameSimulator;
+import dk.easv.bll.game.GameState;
+
+import java.util.SplittableRandom;
+
+/**
+ * Shows how the parallel MCTS modes scale from 1 thread up to the number of cores.
+ *
+ * For every thread count and mode it measures the iterations per second on
+ * the same position, and the score in games against the single threaded
+ * MctsBot with the same time per move (wins 1, ties 1/2).
+ *
+ * Arguments, all optional: maximum threads, time per move in ms, games per setting.
+ */
+public class MctsScalingBenchmark {
+
+    public static void main(String[] args) {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int timePerMove = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int games = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        GameState position = openingPosition(timePerMove);
+
+        System.out.println("threads mode  iterations/s  score vs MctsBot");
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            for (ParallelMctsBot.Mode mode : ParallelMctsBot.Mode.values()) {
+                ParallelMctsBot bot = new ParallelMctsBot(mode, threads);
+                bot.doMove(position); // warm up
+                bot.doMove(position);
+                double score = play(mode, threads, timePerMove, games);
+                System.out.printf("%7d %-5s %12d  %.2f%n", threads, mode, (long) bot.getIterationsPerSecond(), score);
+            }
+            if (threads < maxThreads && threads * 2 > maxThreads)
+                threads = maxThreads / 2; // measure the maximum as well
+        }
+    }
+
+    // A position 8 random moves into the game, the same in every run
+    private static GameState openingPosition(int timePerMove) {
+        GameState state = new GameState(new BitboardField());
+        state.setTimePerMove(timePerMove);
+        GameManager game = new GameManager(state);
+        GameSimulator simulator = new GameSimulator();
+        SplittableRandom random = new SplittableRandom(42);
+        int[] moves = new int[81];
+        for (int i = 0; i < 8; i++) {
+            simulator.setState(state);
+            int count = simulator.getAvailableMoves(moves);
+            int move = moves[random.nextInt(count)];
+            game.makeMove(move / 9, move % 9);
+        }
+        return state;
+    }
+
+    // Score of the parallel bot per game, starting every other game.
+    // The bots are reused, their trees start over when a new game begins.
+    // A bot that fails, plays an illegal move or times out loses, like in a simulation.
+    private static double play(ParallelMctsBot.Mode mode, int threads, int timePerMove, int games) {
+        IBot parallel = new ParallelMctsBot(mode, threads);
+        IBot single = new MctsBot();
+        double points = 0;
+        for (int i = 0; i < games; i++) {
+            boolean parallelFirst = i % 2 == 0;
+            GameState state = new GameState(new BitboardField());
+            state.setTimePerMove(timePerMove);
+            GameManager game = new GameManager(state, parallelFirst ? parallel : single, parallelFirst ? single : parallel);
+            while (game.getGameOver() == GameManager.GameOverState.Active) {
+                boolean valid;
+                try {
+                    valid = game.updateGame();
+                } catch (RuntimeException ex) {
+                    valid = false;
+                }
+                if (!valid)
+                    game.forfeit(game.getCurrentPlayer()); // bot not following rules
+            }
+            int winner = game.getWinner();
+            if (winner == -1)
+                points += 0.5;
+            else if ((winner == 0) == parallelFirst)
+                points += 1;
+            // A bot still busy with a move it timed out on is not reused
+            if (game.isBusy(parallel))
+                parallel = new ParallelMctsBot(mode, threads);
+            if (game.isBusy(single))
+                single = new MctsBot();
+        }
+        return points / games;
+    }
+}
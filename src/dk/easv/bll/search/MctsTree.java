@@ -0,0 +1,338 @@
+package dk.easv.bll.search;
+
+import dk.easv.bll.game.GameManager;
+import dk.easv.bll.game.GameSimulator;
+import dk.easv.bll.game.IGameState;
+import dk.easv.bll.game.Zobrist;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * A Monte Carlo search tree (UCT) whose nodes live in primitive arrays
+ * instead of node objects, so a search does not create garbage. The arrays
+ * start small and double when full, up to the capacity, so a short search
+ * only takes the memory it needs.
+ *
+ * The children of a node are stored next to each other, so a node only needs
+ * the index of its first child and the number of children. Node 0 is the root.
+ * Wins are counted in half points (win 2, tie 1, loss 0) for the player who
+ * made the move leading to the node.
+ *
+ * Between searches the subtree of the position actually reached is kept: it
+ * is copied to the front of a second set of arrays and the two sets swap.
+ * A tree is not thread safe, use one per thread.
+ */
+public class MctsTree {
+
+    public static final double DEFAULT_EXPLORATION = Math.sqrt(2);
+
+    private static final int NO_CHILDREN = -1;
+    // Visits before a leaf is expanded, so the tree grows slower than the number of playouts
+    private static final int EXPAND_VISITS = 2;
+    private static final int INITIAL_CAPACITY = 1 << 14;
+
+    private final int capacity;
+    private final double exploration;
+    private SplittableRandom random;
+
+    private int[] firstChild;
+    private byte[] childCount;
+    private int[] visits;
+    private int[] wins;
+    private byte[] moves;
+    // Target of the copy when the root moves down
+    private int[] spareFirstChild;
+    private byte[] spareChildCount;
+    private int[] spareVisits;
+    private int[] spareWins;
+    private byte[] spareMoves;
+    private int size;
+
+    private final GameSimulator rootPosition = new GameSimulator();
+    private final GameSimulator simulator = new GameSimulator();
+    private final GameSimulator finder = new GameSimulator();
+    private final int[] path = new int[82];
+    private final int[] moveBuffer = new int[81];
+    private long iterations;
+
+    /**
+     * @param capacity Maximum number of nodes. At most two sets of arrays of about 14 bytes per node are allocated.
+     * @param exploration The UCT exploration constant
+     * @param seed Seed for the random playouts
+     */
+    public MctsTree(int capacity, double exploration, long seed) {
+        this.capacity = capacity;
+        this.exploration = exploration;
+        this.random = new SplittableRandom(seed);
+        int initial = Math.min(capacity, INITIAL_CAPACITY);
+        firstChild = new int[initial];
+        childCount = new byte[initial];
+        visits = new int[initial];
+        wins = new int[initial];
+        moves = new byte[initial];
+        // Allocated by the first compact
+        spareFirstChild = new int[0];
+        spareChildCount = new byte[0];
+        spareVisits = new int[0];
+        spareWins = new int[0];
+        spareMoves = new byte[0];
+    }
+
+    /**
+     * Moves the root to the state. If the state can be reached from the current
+     * root in one or two moves, the subtree of that position is kept, otherwise
+     * the tree starts over.
+     * @param state The position to search from
+     * @return true if a subtree was reused
+     */
+    public boolean setRoot(IGameState state) {
+        long key = Zobrist.compute(state);
+        if (size > 0) {
+            if (key == rootPosition.getZobristKey())
+                return true;
+            int node = findDescendant(key);
+            if (node != NO_CHILDREN) {
+                rootPosition.copyFrom(finder);
+                compact(node);
+                return true;
+            }
+        }
+        rootPosition.setState(state);
+        size = 1;
+        firstChild[0] = NO_CHILDREN;
+        childCount[0] = 0;
+        visits[0] = 0;
+        wins[0] = 0;
+        return false;
+    }
+
+    /**
+     * Empties the tree and starts the playouts over from the seed, like a new
+     * tree but without allocating one, e.g. to play a game again.
+     * @param seed Seed for the random playouts
+     */
+    public void reset(long seed) {
+        random = new SplittableRandom(seed);
+        size = 0;
+    }
+
+    /**
+     * Runs iterations until the deadline.
+     * @param deadlineNanos Deadline in System.nanoTime() time
+     * @return Number of iterations run
+     */
+    public long search(long deadlineNanos) {
+        long start = iterations;
+        do {
+            for (int i = 0; i < 64; i++)
+                iterate();
+        } while (System.nanoTime() < deadlineNanos);
+        return iterations - start;
+    }
+
+    /**
+     * Runs one selection, expansion, playout and backpropagation.
+     */
+    public void iterate() {
+        simulator.copyFrom(rootPosition);
+        int node = 0;
+        int depth = 0;
+        path[0] = 0;
+        while (childCount[node] > 0) {
+            node = select(node);
+            simulator.play(moves[node]);
+            path[++depth] = node;
+        }
+        if (simulator.getGameOver() == GameManager.GameOverState.Active && visits[node] >= EXPAND_VISITS - 1
+                && expand(node)) {
+            node = firstChild[node] + random.nextInt(childCount[node]);
+            simulator.play(moves[node]);
+            path[++depth] = node;
+        }
+
+        int winner = simulator.playout(random);
+        // The player who moved into the node at depth 1 is the player to move at the root
+        int mover = rootPosition.getCurrentPlayer();
+        for (int i = 0; i <= depth; i++) {
+            int n = path[i];
+            visits[n]++;
+            if (i > 0) {
+                wins[n] += winner == mover ? 2 : winner < 0 ? 1 : 0;
+                mover = 1 - mover;
+            }
+        }
+        iterations++;
+    }
+
+    /**
+     * @return The most visited move at the root (x * 9 + y), or -1 if the root has no children
+     */
+    public int getBestMove() {
+        int best = -1;
+        int bestVisits = -1;
+        int first = firstChild[0];
+        for (int i = 0; i < childCount[0]; i++) {
+            if (visits[first + i] > bestVisits) {
+                bestVisits = visits[first + i];
+                best = moves[first + i];
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @param move A move at the root, x * 9 + y
+     * @return Visits of the move, 0 if it is not in the tree
+     */
+    public int getVisits(int move) {
+        int first = firstChild[0];
+        for (int i = 0; i < childCount[0]; i++) {
+            if (moves[first + i] == move)
+                return visits[first + i];
+        }
+        return 0;
+    }
+
+    /**
+     * @param move A move at the root, x * 9 + y
+     * @return Wins of the move in half points, 0 if it is not in the tree
+     */
+    public int getWins(int move) {
+        int first = firstChild[0];
+        for (int i = 0; i < childCount[0]; i++) {
+            if (moves[first + i] == move)
+                return wins[first + i];
+        }
+        return 0;
+    }
+
+    /**
+     * @return Visits of the root, including those of reused subtrees
+     */
+    public int getRootVisits() {
+        return visits[0];
+    }
+
+    /**
+     * @return Number of nodes in use
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return Number of iterations run since the tree was created
+     */
+    public long getIterations() {
+        return iterations;
+    }
+
+    private int select(int node) {
+        int first = firstChild[node];
+        int count = childCount[node];
+        double logParent = Math.log(visits[node]);
+        int best = first;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int child = first; child < first + count; child++) {
+            int n = visits[child];
+            if (n == 0)
+                return child;
+            double value = wins[child] / (2.0 * n) + exploration * Math.sqrt(logParent / n);
+            if (value > bestValue) {
+                bestValue = value;
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    private boolean expand(int node) {
+        int count = simulator.getAvailableMoves(moveBuffer);
+        if (size + count > firstChild.length && !grow(size + count))
+            return false; // full, keep playing out from the leaf
+        firstChild[node] = size;
+        for (int i = 0; i < count; i++) {
+            firstChild[size] = NO_CHILDREN;
+            childCount[size] = 0;
+            visits[size] = 0;
+            wins[size] = 0;
+            moves[size] = (byte) moveBuffer[i];
+            size++;
+        }
+        childCount[node] = (byte) count;
+        return true;
+    }
+
+    // Doubles the arrays, or less when that would pass the capacity
+    private boolean grow(int needed) {
+        if (needed > capacity)
+            return false;
+        int length = (int) Math.min(capacity, Math.max(needed, 2L * firstChild.length));
+        firstChild = Arrays.copyOf(firstChild, length);
+        childCount = Arrays.copyOf(childCount, length);
+        visits = Arrays.copyOf(visits, length);
+        wins = Arrays.copyOf(wins, length);
+        moves = Arrays.copyOf(moves, length);
+        return true;
+    }
+
+    // Looks for the position among the children and grandchildren of the root.
+    // The position of the found node is left in the finder.
+    private int findDescendant(long key) {
+        int first = firstChild[0];
+        for (int i = first; i < first + childCount[0]; i++) {
+            finder.copyFrom(rootPosition);
+            finder.play(moves[i]);
+            if (finder.getZobristKey() == key)
+                return i;
+            int grandchildren = firstChild[i];
+            for (int k = grandchildren; k < grandchildren + childCount[i]; k++) {
+                finder.copyFrom(rootPosition);
+                finder.play(moves[i]);
+                finder.play(moves[k]);
+                if (finder.getZobristKey() == key)
+                    return k;
+            }
+        }
+        return NO_CHILDREN;
+    }
+
+    // Copies the subtree of the node to the spare arrays, breadth first so
+    // children stay together, and makes it the tree
+    private void compact(int root) {
+        if (spareFirstChild.length < firstChild.length) {
+            int length = firstChild.length;
+            spareFirstChild = new int[length];
+            spareChildCount = new byte[length];
+            spareVisits = new int[length];
+            spareWins = new int[length];
+            spareMoves = new byte[length];
+        }
+        spareFirstChild[0] = root; // holds the old index until the node is copied
+        int newSize = 1;
+        for (int i = 0; i < newSize; i++) {
+            int old = spareFirstChild[i];
+            int count = childCount[old];
+            spareChildCount[i] = (byte) count;
+            spareVisits[i] = visits[old];
+            spareWins[i] = wins[old];
+            spareMoves[i] = moves[old];
+            if (count == 0) {
+                spareFirstChild[i] = NO_CHILDREN;
+                continue;
+            }
+            int oldFirst = firstChild[old];
+            spareFirstChild[i] = newSize;
+            for (int k = 0; k < count; k++)
+                spareFirstChild[newSize++] = oldFirst + k;
+        }
+
+        int[] ints = firstChild; firstChild = spareFirstChild; spareFirstChild = ints;
+        ints = visits; visits = spareVisits; spareVisits = ints;
+        ints = wins; wins = spareWins; spareWins = ints;
+        byte[] bytes = childCount; childCount = spareChildCount; spareChildCount = bytes;
+        bytes = moves; moves = spareMoves; spareMoves = bytes;
+        size = newSize;
+    }
+}
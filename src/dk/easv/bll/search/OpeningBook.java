@@ -0,0 +1,144 @@
+package dk.easv.bll.search;
+
+import dk.easv.bll.field.IField;
+import dk.easv.bll.field.Symmetry;
+import dk.easv.bll.game.IGameState;
+import dk.easv.bll.game.Zobrist;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Best moves for early positions, found by long searches ahead of time
+ * (see OpeningBookGenerator), so a bot can answer them at once.
+ *
+ * Positions are stored by Zobrist key. A position that is a rotation or
+ * mirror image of another has the same best move, rotated or mirrored, so
+ * every position is stored once in its canonical orientation (see Symmetry),
+ * which makes the book up to 8 times smaller.
+ *
+ * On disk the entries are sorted by key, 11 bytes each: key, move, score.
+ */
+public class OpeningBook {
+
+    /** The book bots look for in the working folder */
+    public static final String DEFAULT_FILE = "opening.book";
+    public static final int NO_MOVE = -1;
+
+    private static final int MAGIC = 0x55545442; // "UTTB"
+    // 2: keys of the canonical orientation instead of the lowest key
+    private static final int VERSION = 2;
+
+    // Move x * 9 + y in the low 7 bits, score above
+    private final Map<Long, Integer> entries = new HashMap<>();
+
+    /**
+     * Reads a book written by save.
+     * @param file The book
+     * @return The book
+     * @throws IOException If the file can't be read or is not a book
+     */
+    public static OpeningBook load(Path file) throws IOException {
+        OpeningBook book = new OpeningBook();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC)
+                throw new IOException("Not an opening book " + file);
+            int version = in.readInt();
+            if (version != VERSION)
+                throw new IOException("Unknown opening book version " + version + " in " + file);
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long key = in.readLong();
+                int move = in.readByte();
+                int score = in.readShort();
+                book.entries.put(key, move | score << 7);
+            }
+        }
+        return book;
+    }
+
+    /**
+     * @param file Where to write the book
+     * @throws IOException If the file can't be written
+     */
+    public synchronized void save(Path file) throws IOException {
+        long[] keys = new long[entries.size()];
+        int i = 0;
+        for (long key : entries.keySet())
+            keys[i++] = key;
+        Arrays.sort(keys);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(keys.length);
+            for (long key : keys) {
+                int entry = entries.get(key);
+                out.writeLong(key);
+                out.writeByte(entry & 0x7F);
+                out.writeShort(entry >> 7);
+            }
+        }
+    }
+
+    /**
+     * Adds or replaces the best move of a position.
+     * @param state The position
+     * @param move The best move, x * 9 + y
+     * @param score Expected score of the player to move, from 0 to 1
+     */
+    public synchronized void put(IGameState state, int move, double score) {
+        int[] symmetry = new int[1];
+        long key = canonicalKey(state, symmetry);
+        entries.put(key, Symmetry.mapCell(symmetry[0], move) | (int) Math.round(score * 1000) << 7);
+    }
+
+    /**
+     * @param state The position
+     * @return The best move, x * 9 + y, or NO_MOVE if the position is not in the book
+     */
+    public synchronized int getMove(IGameState state) {
+        int[] symmetry = new int[1];
+        Integer entry = entries.get(canonicalKey(state, symmetry));
+        if (entry == null)
+            return NO_MOVE;
+        int move = Symmetry.unmapCell(symmetry[0], entry & 0x7F);
+        // A key collision could give a move that doesn't fit the position
+        return state.getField().isInActiveMicroboard(move / 9, move % 9)
+                && state.getField().getPlayerId(move / 9, move % 9).equals(IField.EMPTY_FIELD) ? move : NO_MOVE;
+    }
+
+    /**
+     * @param state The position
+     * @return Expected score of the player to move in the book, or -1 if the position is not in the book
+     */
+    public synchronized double getScore(IGameState state) {
+        Integer entry = entries.get(canonicalKey(state, new int[1]));
+        return entry == null ? -1 : (entry >> 7) / 1000.0;
+    }
+
+    public synchronized boolean contains(IGameState state) {
+        return entries.containsKey(canonicalKey(state, new int[1]));
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @param state The position
+     * @param symmetry Gets the symmetry that turns the position into the stored orientation
+     * @return The key of the canonical orientation of the position
+     */
+    static long canonicalKey(IGameState state, int[] symmetry) {
+        symmetry[0] = Symmetry.canonicalSymmetry(state.getField());
+        return Zobrist.compute(state, symmetry[0]);
+    }
+}
@@ -0,0 +1,126 @@
+package dk.easv.bll.search;
+
+import dk.easv.bll.field.BitboardField;
+import dk.easv.bll.game.GameManager;
+import dk.easv.bll.game.GameState;
+import dk.easv.bll.game.IGameState;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds an opening book with a long MCTS search of every position a bot
+ * using the book can meet in the first plies.
+ *
+ * A bot that follows the book only plays the book move, but the opponent can
+ * play anything. So the book holds the empty board and every position after
+ * one move (for both colours), and from there, for every position in the
+ * book, every reply to its book move. Positions that are rotations or mirror
+ * images of each other are searched once.
+ *
+ * Usage: {@code OpeningBookGenerator [plies] [milliseconds per position] [threads] [file]},
+ * by default 4 plies, 5000 ms, all cores, opening.book.
+ */
+public class OpeningBookGenerator {
+
+    private static final int TREE_CAPACITY = 1 << 21;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int plies = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int millis = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        String file = args.length > 3 ? args[3] : OpeningBook.DEFAULT_FILE;
+
+        OpeningBook book = generate(plies, millis, threads);
+        book.save(Paths.get(file));
+        System.out.println("Wrote " + book.size() + " positions to " + file);
+    }
+
+    /**
+     * @param plies Positions with fewer moves than this are searched
+     * @param millis Search time per position
+     * @param threads Positions searched at the same time
+     * @return The book
+     * @throws InterruptedException If the calling thread is interrupted
+     */
+    public static OpeningBook generate(int plies, int millis, int threads) throws InterruptedException {
+        OpeningBook book = new OpeningBook();
+        Set<Long> seen = new HashSet<>();
+        // The positions to search, by number of moves played
+        List<List<IGameState>> positions = new ArrayList<>();
+        for (int ply = 0; ply < plies; ply++)
+            positions.add(new ArrayList<>());
+        addNew(positions, seen, new GameState(new BitboardField()));
+
+        int[] moves = new int[81];
+        for (int ply = 0; ply < plies; ply++) {
+            List<IGameState> level = positions.get(ply);
+            long start = System.nanoTime();
+            searchAll(book, level, millis, threads);
+            System.out.printf("Ply %d: %d positions in %d s%n", ply, level.size(),
+                    (System.nanoTime() - start) / 1_000_000_000);
+
+            for (IGameState state : level) {
+                if (ply == 0) {
+                    // The positions the second player meets first
+                    int count = state.getField().getAvailableMoves(moves);
+                    for (int i = 0; i < count; i++)
+                        addNew(positions, seen, play(state, moves[i]));
+                }
+                IGameState afterBookMove = play(state, book.getMove(state));
+                int count = afterBookMove.getField().getAvailableMoves(moves);
+                for (int i = 0; i < count; i++)
+                    addNew(positions, seen, play(afterBookMove, moves[i]));
+            }
+            level.clear();
+        }
+        return book;
+    }
+
+    private static void addNew(List<List<IGameState>> positions, Set<Long> seen, IGameState state) {
+        if (state.getMoveNumber() >= positions.size() || state.getField().getAvailableMoveCount() == 0)
+            return;
+        if (seen.add(OpeningBook.canonicalKey(state, new int[1])))
+            positions.get(state.getMoveNumber()).add(state);
+    }
+
+    // Searches the positions on a pool of threads, each with its own tree
+    private static void searchAll(OpeningBook book, List<IGameState> positions, int millis, int threads)
+            throws InterruptedException {
+        AtomicInteger nextPosition = new AtomicInteger();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long seed = t;
+            Thread worker = new Thread(() -> {
+                MctsTree tree = new MctsTree(TREE_CAPACITY, MctsTree.DEFAULT_EXPLORATION, seed);
+                int i;
+                while ((i = nextPosition.getAndIncrement()) < positions.size()) {
+                    IGameState state = positions.get(i);
+                    tree.setRoot(state);
+                    tree.search(System.nanoTime() + millis * 1_000_000L);
+                    int move = tree.getBestMove();
+                    double score = tree.getWins(move) / (2.0 * Math.max(1, tree.getVisits(move)));
+                    book.put(state, move, score);
+                }
+            }, "Opening book");
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers)
+            worker.join();
+    }
+
+    private static IGameState play(IGameState state, int move) {
+        GameState next = new GameState(state);
+        GameManager game = new GameManager(next);
+        game.setCurrentPlayer(next.getMoveNumber() % 2);
+        game.makeMove(move / 9, move % 9);
+        return next;
+    }
+}
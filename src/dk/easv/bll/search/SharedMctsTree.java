@@ -0,0 +1,225 @@
+package dk.easv.bll.search;
+
+import dk.easv.bll.game.GameManager;
+import dk.easv.bll.game.GameSimulator;
+import dk.easv.bll.game.IGameState;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A Monte Carlo search tree that several threads search at the same time
+ * (tree parallelisation). It has the same array layout as MctsTree, but the
+ * visit and win counters are atomic and nodes are taken from the arena with
+ * an atomic counter.
+ *
+ * A thread counts its visit on the way down, before the playout, and only
+ * adds the result on the way back up. Until then the visit counts as a loss
+ * (a virtual loss), which steers the other threads to other moves.
+ *
+ * The tree starts over at every {@link #setRoot(IGameState)}. Each thread
+ * searches through its own {@link Worker}.
+ */
+public class SharedMctsTree {
+
+    private static final int NO_CHILDREN = -1;
+    private static final int EXPAND_VISITS = 2;
+    // Values of expandState
+    private static final int LEAF = 0;
+    private static final int EXPANDING = 1;
+    private static final int EXPANDED = 2;
+
+    private final int capacity;
+    private final double exploration;
+
+    // Written once by the thread that expands the node, read after expandState is EXPANDED
+    private final int[] firstChild;
+    private final byte[] childCount;
+    private final byte[] moves;
+    private final AtomicIntegerArray expandState;
+    private final AtomicIntegerArray visits;
+    private final AtomicIntegerArray wins;
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final GameSimulator rootPosition = new GameSimulator();
+
+    /**
+     * @param capacity Maximum number of nodes, about 18 bytes each
+     * @param exploration The UCT exploration constant
+     */
+    public SharedMctsTree(int capacity, double exploration) {
+        this.capacity = capacity;
+        this.exploration = exploration;
+        firstChild = new int[capacity];
+        childCount = new byte[capacity];
+        moves = new byte[capacity];
+        expandState = new AtomicIntegerArray(capacity);
+        visits = new AtomicIntegerArray(capacity);
+        wins = new AtomicIntegerArray(capacity);
+    }
+
+    /**
+     * Clears the tree and sets the position to search. Must not be called while workers are searching.
+     * @param state The position to search from
+     */
+    public void setRoot(IGameState state) {
+        rootPosition.setState(state);
+        size.set(1);
+        firstChild[0] = NO_CHILDREN;
+        childCount[0] = 0;
+        expandState.set(0, LEAF);
+        visits.set(0, 0);
+        wins.set(0, 0);
+    }
+
+    /**
+     * @param seed Seed for the playouts of the worker
+     * @return A new worker for one thread
+     */
+    public Worker newWorker(long seed) {
+        return new Worker(seed);
+    }
+
+    /**
+     * @return The most visited move at the root (x * 9 + y), or -1 if the root has no children
+     */
+    public int getBestMove() {
+        if (expandState.get(0) != EXPANDED)
+            return -1;
+        int best = -1;
+        int bestVisits = -1;
+        int first = firstChild[0];
+        for (int i = first; i < first + childCount[0]; i++) {
+            if (visits.get(i) > bestVisits) {
+                bestVisits = visits.get(i);
+                best = moves[i];
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return Number of nodes in use
+     */
+    public int getSize() {
+        return Math.min(size.get(), capacity);
+    }
+
+    /**
+     * Searches the shared tree from one thread.
+     */
+    public class Worker {
+        private final SplittableRandom random;
+        private final GameSimulator simulator = new GameSimulator();
+        private final int[] path = new int[82];
+        private final int[] moveBuffer = new int[81];
+        private long iterations;
+
+        private Worker(long seed) {
+            random = new SplittableRandom(seed);
+        }
+
+        /**
+         * Runs iterations until the deadline or until the thread is interrupted.
+         * @param deadlineNanos Deadline in System.nanoTime() time
+         * @return Number of iterations run
+         */
+        public long search(long deadlineNanos) {
+            long start = iterations;
+            do {
+                for (int i = 0; i < 64; i++)
+                    iterate();
+            } while (System.nanoTime() < deadlineNanos && !Thread.currentThread().isInterrupted());
+            return iterations - start;
+        }
+
+        /**
+         * Runs one selection, expansion, playout and backpropagation.
+         */
+        public void iterate() {
+            simulator.copyFrom(rootPosition);
+            int node = 0;
+            int depth = 0;
+            path[0] = 0;
+            visits.incrementAndGet(0);
+            while (expandState.get(node) == EXPANDED) {
+                node = select(node);
+                visits.incrementAndGet(node); // virtual loss until the result is added
+                simulator.play(moves[node]);
+                path[++depth] = node;
+            }
+            if (simulator.getGameOver() == GameManager.GameOverState.Active && visits.get(node) >= EXPAND_VISITS
+                    && expand(node)) {
+                node = firstChild[node] + random.nextInt(childCount[node]);
+                visits.incrementAndGet(node);
+                simulator.play(moves[node]);
+                path[++depth] = node;
+            }
+
+            int winner = simulator.playout(random);
+            int mover = rootPosition.getCurrentPlayer();
+            for (int i = 1; i <= depth; i++) {
+                int result = winner == mover ? 2 : winner < 0 ? 1 : 0;
+                if (result > 0)
+                    wins.addAndGet(path[i], result);
+                mover = 1 - mover;
+            }
+            iterations++;
+        }
+
+        /**
+         * @return Number of iterations this worker has run
+         */
+        public long getIterations() {
+            return iterations;
+        }
+
+        private int select(int node) {
+            int first = firstChild[node];
+            int count = childCount[node];
+            double logParent = Math.log(Math.max(1, visits.get(node)));
+            int best = first;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int child = first; child < first + count; child++) {
+                int n = visits.get(child);
+                if (n == 0)
+                    return child;
+                double value = wins.get(child) / (2.0 * n) + exploration * Math.sqrt(logParent / n);
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = child;
+                }
+            }
+            return best;
+        }
+
+        private boolean expand(int node) {
+            if (!expandState.compareAndSet(node, LEAF, EXPANDING))
+                return false; // another thread is expanding it, play out from here
+            int count = simulator.getAvailableMoves(moveBuffer);
+            // Only reserves the children if they fit, so size never passes the capacity
+            int first;
+            do {
+                first = size.get();
+                if (first + count > capacity) {
+                    expandState.set(node, LEAF);
+                    return false; // full, keep playing out from the leaf
+                }
+            } while (!size.compareAndSet(first, first + count));
+            for (int i = 0; i < count; i++) {
+                int child = first + i;
+                firstChild[child] = NO_CHILDREN;
+                childCount[child] = 0;
+                moves[child] = (byte) moveBuffer[i];
+                expandState.set(child, LEAF);
+                visits.set(child, 0);
+                wins.set(child, 0);
+            }
+            firstChild[node] = first;
+            childCount[node] = (byte) count;
+            expandState.set(node, EXPANDED); // publishes the children to the other threads
+            return true;
+        }
+    }
+}
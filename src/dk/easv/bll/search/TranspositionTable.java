@@ -0,0 +1,112 @@
+package dk.easv.bll.search;
+
+/**
+ * A fixed-size transposition table in two primitive arrays, keyed by the
+ * Zobrist key of a position.
+ *
+ * Entries are not locked. Each slot stores the key XOR-ed with its data, so a
+ * slot torn by two threads writing at the same time simply fails to verify on
+ * probe, and the table can be shared between search threads.
+ *
+ * Replacement is depth-preferred: an entry is only overwritten by a result of
+ * at least the same depth, unless it was stored by an earlier search
+ * (see {@link #newSearch()}).
+ */
+public class TranspositionTable {
+
+    /** Returned by probe when the position is not in the table */
+    public static final long MISS = -1L;
+
+    public static final int EXACT = 0;
+    public static final int LOWER_BOUND = 1;
+    public static final int UPPER_BOUND = 2;
+
+    /** Move value of an entry without a best move */
+    public static final int NO_MOVE = 127;
+
+    private final long[] keys;
+    private final long[] data;
+    private final int mask;
+    private int age = 0;
+
+    /**
+     * @param sizeBits The table holds 2^sizeBits entries of 16 bytes
+     */
+    public TranspositionTable(int sizeBits) {
+        keys = new long[1 << sizeBits];
+        data = new long[1 << sizeBits];
+        mask = (1 << sizeBits) - 1;
+    }
+
+    /**
+     * Marks the start of a new search, so entries of older searches are replaced first.
+     */
+    public void newSearch() {
+        age = (age + 1) & 0xFF;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear() {
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = 0;
+            data[i] = 0;
+        }
+    }
+
+    /**
+     * @param key Zobrist key of the position
+     * @return The packed entry, to be read with the static getters, or MISS
+     */
+    public long probe(long key) {
+        int index = (int) key & mask;
+        long entry = data[index];
+        if ((keys[index] ^ entry) != key || entry == 0)
+            return MISS;
+        return entry;
+    }
+
+    /**
+     * Stores a search result for a position.
+     * @param key Zobrist key of the position
+     * @param score The score
+     * @param depth The remaining depth it was searched to, 0-255
+     * @param flag EXACT, LOWER_BOUND or UPPER_BOUND
+     * @param move The best move (x * 9 + y), or NO_MOVE
+     */
+    public void store(long key, int score, int depth, int flag, int move) {
+        int index = (int) key & mask;
+        long old = data[index];
+        if (old != 0 && getAge(old) == age && getDepth(old) > depth)
+            return;
+        long entry = (score & 0xFFFFFFFFL)
+                | (long) (move & 0x7F) << 32
+                | (long) (depth & 0xFF) << 39
+                | (long) flag << 47
+                | (long) age << 49
+                | 1L << 57; // never 0, so an empty slot is not an entry
+        data[index] = entry;
+        keys[index] = key ^ entry;
+    }
+
+    public static int getScore(long entry) {
+        return (int) entry;
+    }
+
+    public static int getMove(long entry) {
+        return (int) (entry >>> 32) & 0x7F;
+    }
+
+    public static int getDepth(long entry) {
+        return (int) (entry >>> 39) & 0xFF;
+    }
+
+    public static int getFlag(long entry) {
+        return (int) (entry >>> 47) & 0x3;
+    }
+
+    private static int getAge(long entry) {
+        return (int) (entry >>> 49) & 0xFF;
+    }
+}
@@ -8,6 +8,7 @@ package dk.easv.dal;
 import dk.easv.bll.bot.IBot;
 import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.Modifier;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.nio.file.*;
@@ -28,6 +29,24 @@ public class DynamicBotClassHandler {
         }
         return fileName;
     }
+
+    /**
+     * The bot folder also holds interfaces and helpers for bots, like
+     * EndgameSolver. Only classes that can be made into a bot are loaded.
+     * @return true if the class is a concrete IBot with a public constructor without arguments
+     */
+    private static boolean isBot(Class<?> clazz) {
+        int modifiers = clazz.getModifiers();
+        if (!IBot.class.isAssignableFrom(clazz) || clazz.isInterface()
+                || Modifier.isAbstract(modifiers) || !Modifier.isPublic(modifiers))
+            return false;
+        try {
+            clazz.getConstructor(); // only finds public constructors
+            return true;
+        } catch (NoSuchMethodException ex) {
+            return false;
+        }
+    }
     
     public static void writeBotsToTextFile() throws ClassNotFoundException, IOException, InstantiationException, IllegalAccessException {
         File file = new File("bots.txt");
@@ -42,7 +61,7 @@ public class DynamicBotClassHandler {
                 URL[] urls = {path.toFile().toURI().toURL()};
                 ClassLoader cl = new URLClassLoader(urls);
                 Class clazz = cl.loadClass(classPathAndName);
-                if (!clazz.isInterface()) {
+                if (isBot(clazz)) {
                     IBot bot = (IBot) clazz.newInstance();
                     bots.add(bot.getBotName());
                 }
@@ -54,9 +73,14 @@ public class DynamicBotClassHandler {
                 StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.CREATE);
     }
     
-    public static ObservableList<IBot> loadBotList() throws IOException, ClassNotFoundException, InstantiationException, IllegalAccessException
+    /**
+     * Finds the bots without creating them and without JavaFX, e.g. for the
+     * headless runner.
+     * @return The bot classes in the bot folder
+     */
+    public static List<Class<? extends IBot>> loadBotClasses() throws IOException, ClassNotFoundException
     {
-        ObservableList<IBot> bots = FXCollections.observableArrayList();
+        List<Class<? extends IBot>> bots = new ArrayList<>();
 
         Path dir = FileSystems.getDefault().getPath("./src/dk/easv/bll/bot");
         try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*.java")) {
@@ -64,13 +88,19 @@ public class DynamicBotClassHandler {
                 String classPathAndName = "dk.easv.bll.bot." + getFilenameNoExtension(path);
                 URL[] urls = {path.toFile().toURI().toURL()};
                 ClassLoader cl = new URLClassLoader(urls);
-                Class clazz = cl.loadClass(classPathAndName);
-                if (!clazz.isInterface()) {
-                    IBot bot = (IBot) clazz.newInstance();
-                    bots.add(bot);
-                }
+                Class<?> clazz = cl.loadClass(classPathAndName);
+                if (isBot(clazz))
+                    bots.add(clazz.asSubclass(IBot.class));
             }
         }
         return bots;
     }
+
+    public static ObservableList<IBot> loadBotList() throws IOException, ClassNotFoundException, InstantiationException, IllegalAccessException
+    {
+        ObservableList<IBot> bots = FXCollections.observableArrayList();
+        for (Class<? extends IBot> clazz : loadBotClasses())
+            bots.add(clazz.newInstance());
+        return bots;
+    }
 }
@@ -0,0 +1,350 @@
+package dk.easv.dal;
+
+import dk.easv.bll.game.stats.GameRecord;
+import dk.easv.bll.game.stats.GameResult;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * An append-only file of game records, written and read through memory mapping.
+ *
+ * A record takes 16 bytes plus one byte per move and one to three bytes per
+ * think time, so millions of games fit in little space. Bot names are stored
+ * once, in a players file next to the log, and the records refer to them by
+ * number. An index file next to the log holds the position of every
+ * INDEX_INTERVAL'th record, which splits the log into chunks that can be read
+ * in parallel.
+ *
+ * The header of the log holds the end of the last complete record, so a
+ * record that was being written when the program stopped is ignored. The
+ * index is rebuilt when it doesn't match the log.
+ *
+ * Records can be appended from several threads, and read while they are appended.
+ */
+public class GameRecordLog implements Closeable {
+
+    public static final int INDEX_INTERVAL = 4096;
+
+    private static final int MAGIC = 0x55545452; // "UTTR"
+    private static final int VERSION = 1;
+    // magic, version, end of the records, number of records
+    private static final int HEADER_SIZE = 24;
+    private static final int END_POSITION = 8;
+    private static final int COUNT_POSITION = 16;
+    // move count, flags, two player ids, seed, two timeout counts
+    private static final int FIXED_SIZE = 16;
+    private static final int MAX_RECORD_SIZE = FIXED_SIZE + 81 + 81 * 5;
+    private static final int REGION_SIZE = 16 << 20;
+    private static final GameResult.Winner[] WINNERS = GameResult.Winner.values();
+
+    private final Path file;
+    private final boolean readOnly;
+    private final FileChannel channel;
+    private final Path indexFile;
+    private final Path playersFile;
+    private MappedByteBuffer header;
+    private MappedByteBuffer region;
+    private long regionStart;
+
+    private long end;
+    private long count;
+    private long[] index = new long[16];
+    private int indexSize;
+    private final Map<String, Integer> playerIds = new HashMap<>();
+    private volatile String[] players = new String[0];
+    private boolean closed = false;
+
+    /**
+     * Opens the log for appending, or creates it if it doesn't exist.
+     * @param file The log file, the index and players files get the same name plus .idx and .players
+     * @throws IOException If the file can't be opened or is not a game record log
+     */
+    public GameRecordLog(Path file) throws IOException {
+        this(file, false);
+    }
+
+    /**
+     * @param file The log file, the index and players files get the same name plus .idx and .players
+     * @param readOnly true to only read an existing log
+     * @throws IOException If the file can't be opened or is not a game record log
+     */
+    public GameRecordLog(Path file, boolean readOnly) throws IOException {
+        this.file = file;
+        this.readOnly = readOnly;
+        indexFile = file.resolveSibling(file.getFileName() + ".idx");
+        playersFile = file.resolveSibling(file.getFileName() + ".players");
+        channel = readOnly ? FileChannel.open(file, StandardOpenOption.READ)
+                : FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        try {
+            openHeader();
+            readPlayers();
+            readIndex();
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Appends a finished game.
+     * @param record The game
+     * @throws IOException If the log can't grow
+     */
+    public synchronized void append(GameRecord record) throws IOException {
+        if (readOnly || closed)
+            throw new IllegalStateException("The log is not open for appending");
+        int player0 = playerId(record.getPlayer0());
+        int player1 = playerId(record.getPlayer1());
+        if (region == null || end + MAX_RECORD_SIZE > regionStart + REGION_SIZE) {
+            regionStart = end;
+            region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, REGION_SIZE);
+        }
+        if (count % INDEX_INTERVAL == 0)
+            appendIndex(end);
+
+        region.position((int) (end - regionStart));
+        int moveCount = record.getMoveCount();
+        region.put((byte) moveCount);
+        region.put((byte) (record.getWinner().ordinal() | (record.isForfeit() ? 4 : 0)));
+        region.putChar((char) player0);
+        region.putChar((char) player1);
+        region.putLong(record.getSeed());
+        region.put((byte) record.getTimeouts(0));
+        region.put((byte) record.getTimeouts(1));
+        for (int i = 0; i < moveCount; i++)
+            region.put((byte) record.getMove(i));
+        for (int i = 0; i < moveCount; i++)
+            putVarInt(region, record.getThinkTime(i));
+
+        // The record counts once the header says so
+        end = regionStart + region.position();
+        count++;
+        header.putLong(END_POSITION, end);
+        header.putLong(COUNT_POSITION, count);
+    }
+
+    public synchronized long getRecordCount() {
+        return count;
+    }
+
+    /**
+     * @return Size of the records in bytes
+     */
+    public synchronized long getSize() {
+        return end - HEADER_SIZE;
+    }
+
+    /**
+     * @return Number of chunks, each holds INDEX_INTERVAL records except the last
+     */
+    public synchronized int getChunkCount() {
+        return indexSize;
+    }
+
+    /**
+     * Reads the records of a chunk, can be called from several threads at once.
+     * @param chunk From 0 to getChunkCount() - 1
+     * @param action Called with every record of the chunk, in order
+     * @throws IOException If the log can't be read
+     */
+    public void forEach(int chunk, Consumer<GameRecord> action) throws IOException {
+        long from;
+        long to;
+        synchronized (this) {
+            from = index[chunk];
+            to = chunk + 1 < indexSize ? index[chunk + 1] : end;
+        }
+        String[] names = players;
+        ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        while (buffer.hasRemaining())
+            action.accept(readRecord(buffer, names));
+    }
+
+    /**
+     * Reads all records in order.
+     * @param action Called with every record
+     * @throws IOException If the log can't be read
+     */
+    public void forEach(Consumer<GameRecord> action) throws IOException {
+        int chunks = getChunkCount();
+        for (int chunk = 0; chunk < chunks; chunk++)
+            forEach(chunk, action);
+    }
+
+    /**
+     * @return Names of the bots in the log, in the order they first played
+     */
+    public List<String> getPlayers() {
+        return Arrays.asList(players.clone());
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Writes everything to disk and closes the log.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        if (!readOnly) {
+            if (region != null)
+                region.force();
+            header.force();
+            region = null;
+            header = null;
+            try {
+                channel.truncate(end); // drop the unused part of the last region
+            } catch (IOException ex) {
+                // Some systems don't truncate a mapped file, the header end still marks the records
+            }
+        }
+        channel.close();
+    }
+
+    private void openHeader() throws IOException {
+        if (channel.size() == 0) {
+            if (readOnly)
+                throw new IOException("Empty game record log " + file);
+            header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            header.putInt(0, MAGIC);
+            header.putInt(4, VERSION);
+            header.putLong(END_POSITION, HEADER_SIZE);
+            header.putLong(COUNT_POSITION, 0);
+            Files.deleteIfExists(indexFile);
+            Files.deleteIfExists(playersFile);
+        }
+        else {
+            if (channel.size() < HEADER_SIZE)
+                throw new IOException("Not a game record log " + file);
+            header = channel.map(readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE,
+                    0, HEADER_SIZE);
+            if (header.getInt(0) != MAGIC)
+                throw new IOException("Not a game record log " + file);
+            if (header.getInt(4) != VERSION)
+                throw new IOException("Unknown game record log version " + header.getInt(4) + " in " + file);
+        }
+        end = header.getLong(END_POSITION);
+        count = header.getLong(COUNT_POSITION);
+    }
+
+    private void readPlayers() throws IOException {
+        if (!Files.exists(playersFile))
+            return;
+        List<String> names = Files.readAllLines(playersFile, StandardCharsets.UTF_8);
+        for (int i = 0; i < names.size(); i++)
+            playerIds.put(names.get(i), i);
+        players = names.toArray(new String[0]);
+    }
+
+    private void readIndex() throws IOException {
+        long expected = (count + INDEX_INTERVAL - 1) / INDEX_INTERVAL;
+        if (Files.exists(indexFile) && Files.size(indexFile) == expected * 8) {
+            ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(indexFile));
+            while (bytes.hasRemaining())
+                addIndex(bytes.getLong());
+            return;
+        }
+
+        // Stopped between writing the index and the record, or the index is lost
+        ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, end - HEADER_SIZE);
+        String[] names = players;
+        for (long record = 0; record < count; record++) {
+            if (record % INDEX_INTERVAL == 0)
+                addIndex(HEADER_SIZE + buffer.position());
+            readRecord(buffer, names);
+        }
+        if (!readOnly) {
+            ByteBuffer bytes = ByteBuffer.allocate(indexSize * 8);
+            for (int i = 0; i < indexSize; i++)
+                bytes.putLong(index[i]);
+            Files.write(indexFile, bytes.array());
+        }
+    }
+
+    private void appendIndex(long offset) throws IOException {
+        addIndex(offset);
+        ByteBuffer bytes = ByteBuffer.allocate(8).putLong(0, offset);
+        try (FileChannel out = FileChannel.open(indexFile, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            out.write(bytes);
+        }
+    }
+
+    private void addIndex(long offset) {
+        if (indexSize == index.length)
+            index = Arrays.copyOf(index, indexSize * 2);
+        index[indexSize++] = offset;
+    }
+
+    private int playerId(String name) throws IOException {
+        Integer id = playerIds.get(name);
+        if (id != null)
+            return id;
+        if (playerIds.size() > Character.MAX_VALUE)
+            throw new IOException("Too many players in " + file);
+        try (BufferedWriter out = Files.newBufferedWriter(playersFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            out.write(name.replace('\n', ' '));
+            out.newLine();
+        }
+        id = playerIds.size();
+        playerIds.put(name, id);
+        String[] names = Arrays.copyOf(players, id + 1);
+        names[id] = name;
+        players = names;
+        return id;
+    }
+
+    private static GameRecord readRecord(ByteBuffer buffer, String[] names) {
+        int moveCount = buffer.get() & 0xFF;
+        int flags = buffer.get();
+        String player0 = names[buffer.getChar()];
+        String player1 = names[buffer.getChar()];
+        long seed = buffer.getLong();
+        int timeouts0 = buffer.get() & 0xFF;
+        int timeouts1 = buffer.get() & 0xFF;
+        byte[] moves = new byte[moveCount];
+        buffer.get(moves);
+        int[] thinkTimes = new int[moveCount];
+        for (int i = 0; i < moveCount; i++)
+            thinkTimes[i] = getVarInt(buffer);
+        return new GameRecord(player0, player1, WINNERS[flags & 3], (flags & 4) != 0, seed,
+                moves, thinkTimes, timeouts0, timeouts1);
+    }
+
+    // 7 bits per byte, low bits first, the high bit says more bytes follow
+    private static void putVarInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int getVarInt(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0)
+                return value;
+        }
+    }
+}
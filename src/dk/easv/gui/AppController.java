@@ -2,8 +2,9 @@ package dk.easv.gui;
 
 import com.jfoenix.controls.*;
 import dk.easv.bll.bot.IBot;
-import dk.easv.bll.game.GameManager;
-import dk.easv.bll.game.stats.GameResult;
+import dk.easv.bll.game.SimulationRunner;
+import dk.easv.bll.game.stats.ResultAggregator;
+import dk.easv.bll.game.stats.Sprt;
 import dk.easv.dal.DynamicBotClassHandler;
 import static dk.easv.gui.util.FontAwesomeHelper.getFontAwesomeIconFromPlayerId;
 import static dk.easv.dal.DynamicBotClassHandler.loadBotList;
@@ -32,6 +33,13 @@ import javafx.scene.layout.AnchorPane;
 
 public class AppController implements Initializable {
 
+    private static final long LIVE_UPDATE_MILLIS = 250;
+    // "Stop early": is the left bot 10 Elo stronger than the right one, with 5% error rates
+    private static final double SPRT_ELO0 = 0;
+    private static final double SPRT_ELO1 = 10;
+    private static final double SPRT_ALPHA = 0.05;
+    private static final double SPRT_BETA = 0.05;
+
     public JFXButton btnTrash;
     public JFXButton btnDiamond;
     @FXML
@@ -64,15 +72,16 @@ public class AppController implements Initializable {
     @FXML
     private AnchorPane anchorMain;
     private BooleanProperty simulation= new SimpleBooleanProperty(false);
-    private volatile int winsBot1 = 0;
-    private volatile int winsBot2 = 0;
-    private volatile int ties = 0;
     @FXML
     private JFXToggleButton toggleBtnSim;
     @FXML
     private JFXSlider sliderSim;
+    @FXML
+    private JFXToggleButton toggleBtnSprt;
     
     private Stage statsWindow  = null;
+    private SimulationRunner simulationRunner = null;
+    private GameResultBatcher resultBatcher = null;
 
     @Override
     public void initialize(URL location, ResourceBundle resources) {
@@ -146,18 +155,56 @@ public class AppController implements Initializable {
     }
 
     private void startSimulation(long amountOfSimulations) {
-        int multiCores = Runtime.getRuntime().availableProcessors();
-        winsBot1 = 0;
-        winsBot2 = 0;
-        ties = 0;
-        for (int i = 0; i < multiCores; i++) {
-            Thread t = new Thread(
-                    new Simulator(amountOfSimulations/multiCores, 
-                        this.comboBotsLeft.getValue().getClass(), 
-                        this.comboBotsRight.getValue().getClass()));
-            t.setDaemon(true);
-            t.start();
+        if (simulationRunner != null) {
+            simulationRunner.cancel();
+            resultBatcher.cancel(); // its results don't belong to the new simulation
         }
+        String bot1Name = comboBotsLeft.getValue().getBotName();
+        String bot2Name = comboBotsRight.getValue().getBotName();
+
+        SimulationRunner runner = new SimulationRunner(
+                comboBotsLeft.getValue().getClass(),
+                comboBotsRight.getValue().getClass(),
+                amountOfSimulations,
+                Runtime.getRuntime().availableProcessors());
+        runner.setTimePerMove(BoardModel.TIME_PER_MOVE);
+        ResultAggregator results = new ResultAggregator();
+        GameResultBatcher batcher = new GameResultBatcher(statsModel);
+        // Stops as soon as it is clear which bot is stronger
+        Sprt sprt = toggleBtnSprt.isSelected() ? new Sprt(SPRT_ELO0, SPRT_ELO1, SPRT_ALPHA, SPRT_BETA) : null;
+        if (sprt != null)
+            sprt.setDecisionListener(decision -> runner.cancel());
+        runner.setResultListener((result, bot1Started) -> {
+            results.gameFinished(result, bot1Started);
+            if (sprt != null)
+                sprt.gameFinished(result, bot1Started);
+            batcher.add(result);
+        });
+        // Live tally while running, the exact one when done
+        results.startLiveUpdates(LIVE_UPDATE_MILLIS, snapshot -> {
+            String summary = bot1Name + " vs " + bot2Name + " | " + snapshot
+                    + " | " + runner.getCompletedGames() + "/" + amountOfSimulations + " games";
+            Platform.runLater(() -> {
+                if (simulationRunner == runner && !runner.isDone())
+                    statsModel.setLastSimulationResults(summary);
+            });
+        });
+        runner.setFinishedListener(() -> {
+            results.stopLiveUpdates();
+            String summary = bot1Name + " vs " + bot2Name + " | " + results.snapshot() + " | "
+                    + "timeouts " + runner.getTimeouts(1) + "/" + runner.getTimeouts(2)
+                    + (sprt != null ? " | " + sprt : "");
+            Platform.runLater(() -> {
+                if (simulationRunner == runner) {
+                    batcher.stop();
+                    statsModel.setLastSimulationResults(summary);
+                }
+            });
+        });
+        simulationRunner = runner;
+        resultBatcher = batcher;
+        batcher.start();
+        runner.start();
     }
 
     @FXML
@@ -167,129 +214,16 @@ public class AppController implements Initializable {
             toggleBtnSim.setSelected(false);
             toggleBtnSim.setDisable(false);
             sliderSim.setDisable(false);
+            toggleBtnSprt.setDisable(false);
         } else {
             toggleBtnSim.setSelected(false);
             toggleBtnSim.setDisable(true);
             sliderSim.setDisable(true);
+            toggleBtnSprt.setSelected(false);
+            toggleBtnSprt.setDisable(true);
         }
     }
     
-    private class Simulator implements Runnable{
-        private final long amountOfSimulations;
-        private IBot bot1;
-        private IBot bot2;
-        public Simulator(
-                long amountOfSimulations, 
-                Class<? extends IBot> b1, 
-                Class<? extends IBot> b2) {
-
-            this.amountOfSimulations=amountOfSimulations;
-            try {
-                this.bot1 = b1.newInstance();
-                this.bot2 = b2.newInstance();
-            }
-            catch (InstantiationException ex) {
-                Logger.getLogger(AppController.class.getName()).log(Level.SEVERE, null, ex);
-            }
-            catch (IllegalAccessException ex) {
-                Logger.getLogger(AppController.class.getName()).log(Level.SEVERE, null, ex);
-            }
-        }
-        
-        @Override
-        public void run() {
-            for (int i = 0; i < amountOfSimulations/2; i++) {
-                BoardModel model = new BoardModel(bot1, bot2);
-                int currentPlayer = 0;
-                while (model.getGameOverState() == GameManager.GameOverState.Active
-                         && model.getGameState().getField().getAvailableMoves().size()>0) {
-                    currentPlayer = model.getCurrentPlayer();
-                    Boolean valid = model.doMove();
-                    if (!valid) {
-                        throw new RuntimeException("Bot not following rules!");
-                    }
-                }
-                // There is a tie
-                if (model.getGameOverState().equals(GameManager.GameOverState.Tie)) {
-                    this.addGameResult(
-                            new GameResult(
-                                    bot1.getBotName(), 
-                                    bot2.getBotName(), 
-                                    GameResult.Winner.tie));
-                    ties++;
-                }
-                else { // There is a winner
-                    GameResult.Winner winResult=null;
-                    if(currentPlayer==0) {
-                        winsBot1++;
-                        winResult = GameResult.Winner.player0;
-                    }
-                    else if(currentPlayer==1){
-                        winsBot2++;
-                        winResult = GameResult.Winner.player1;
-                    }
-                        
-                    this.addGameResult(
-                            new GameResult(
-                                    bot1.getBotName(), 
-                                    bot2.getBotName(), 
-                                    winResult));
-                }
-                
-            }
-            for (int i = 0; i < amountOfSimulations/2; i++) {
-                BoardModel model = new BoardModel(bot2, bot1);
-                int currentPlayer = 0;
-                while (model.getGameOverState() == GameManager.GameOverState.Active
-                         && model.getGameState().getField().getAvailableMoves().size()>0) {
-                    currentPlayer = model.getCurrentPlayer();
-                    Boolean valid = model.doMove();
-                    if (!valid) {
-                        throw new RuntimeException("Bot not following rules!");
-                    }
-                }
-                // There is a tie
-                if (model.getGameOverState().equals(GameManager.GameOverState.Tie)) {
-                    this.addGameResult(
-                            new GameResult(
-                                    bot2.getBotName(), 
-                                    bot1.getBotName(), 
-                                    GameResult.Winner.tie));
-                    ties++;
-                }
-                else { // There is a winner
-                    GameResult.Winner winResult=null;
-                    if(currentPlayer==0) {
-                        winsBot2++;
-                        winResult = GameResult.Winner.player0;
-                    }
-                    else if(currentPlayer==1){
-                        winsBot1++;
-                        winResult = GameResult.Winner.player1;
-                    }
-                        
-                    this.addGameResult(
-                            new GameResult(
-                                    bot2.getBotName(), 
-                                    bot1.getBotName(), 
-                                    winResult));
-                }
-                
-            }
-            setSimulationResults(bot1.getBotName() + " vs " +
-                        bot2.getBotName() + " | " +
-                        "w/w/t " + winsBot1 + "/" +
-                        winsBot2 + "/" + ties);
-        }
-        private void setSimulationResults(String result) {
-            Platform.runLater(()-> 
-                statsModel.setLastSimulationResults(result));
-        }
-        private void addGameResult(GameResult gameResult) {
-            Platform.runLater(()->
-                statsModel.addGameResult(gameResult));
-        }
-    }
     private class CustomIBotListCell extends ListCell<IBot> {
 
         @Override
@@ -358,6 +292,7 @@ public class AppController implements Initializable {
             Scene scene = new Scene(root);
             primaryStage.setScene(scene);
             primaryStage.showAndWait();
+            controller.endGame();
         }
     }
 }
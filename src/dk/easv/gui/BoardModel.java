@@ -2,6 +2,7 @@ package dk.easv.gui;
 
 
 import dk.easv.bll.bot.IBot;
+import dk.easv.bll.field.BitboardField;
 import dk.easv.bll.game.*;
 import dk.easv.bll.game.IGameState;
 import dk.easv.bll.move.IMove;
@@ -10,9 +11,10 @@ import javafx.beans.Observable;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class BoardModel implements Observable{
-    private static final int TIME_PER_MOVE = 1000; //Each bot is allowed 1000ms per move
+    static final int TIME_PER_MOVE = 1000; //Each bot is allowed 1000ms per move
     private final List<InvalidationListener> listeners = new ArrayList<>();
     private final GameManager game;
     private boolean isForced=false;
@@ -26,7 +28,8 @@ public class BoardModel implements Observable{
         game.getCurrentState().setTimePerMove(TIME_PER_MOVE);
     }
     public BoardModel(IBot bot1, IBot bot2) {
-        game = new GameManager(new GameState(), bot1, bot2);
+        // Bot vs bot is what simulations run, so it uses the fast bitboard field
+        game = new GameManager(new GameState(new BitboardField()), bot1, bot2);
         game.getCurrentState().setTimePerMove(TIME_PER_MOVE);
     }
 
@@ -53,8 +56,7 @@ public class BoardModel implements Observable{
     // If bot is cheating/malfunctioning opponent wins
    public void forceGameOver(int winner){
         isForced=true;
-        game.setCurrentPlayer(winner);
-        game.setGameOver(GameManager.GameOverState.Win);
+        game.forfeit(1 - winner);
    }
 
     public boolean doMove() {
@@ -64,6 +66,18 @@ public class BoardModel implements Observable{
         return valid;
     }
 
+    /**
+     * Same as doMove(), without blocking the calling thread, e.g. the JavaFX thread.
+     * @return Completes with true if the bot's move was valid
+     */
+    public CompletableFuture<Boolean> doMoveAsync() {
+        return game.updateGameAsync().thenApply(valid -> {
+            if(valid)
+                notifyAllListeners();
+            return valid;
+        });
+    }
+
     public boolean doMove(IMove move){
         boolean valid = game.updateGame(move);
         if(valid)
@@ -88,8 +102,31 @@ public class BoardModel implements Observable{
         return game.getGameOver();
     }
 
+    /**
+     * @return The player who won, 0 or 1, also when the other player forfeited. -1 if there is no winner.
+     */
+    public int getWinner() {
+        return game.getWinner();
+    }
+
+    /**
+     * @param player 0 or 1
+     * @return Number of moves where the player's bot used more than the time per move
+     */
+    public int getTimeouts(int player) {
+        return game.getTimeouts(player);
+    }
+
     public boolean getIsForced() {
         return isForced;
     }
 
+    /**
+     * Stops a bot that thinks on the human's time for good, e.g. when the game
+     * window is closed. A bot that is still moving won't start pondering.
+     */
+    public void stopPondering() {
+        game.setPondering(false);
+    }
+
 }
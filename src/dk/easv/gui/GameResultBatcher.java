@@ -0,0 +1,81 @@
+package dk.easv.gui;
+
+import dk.easv.bll.game.stats.GameResult;
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.util.Duration;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Moves game results from the simulation threads to the StatsModel in batches.
+ *
+ * The threads only add to a lock-free queue. A few times per second the
+ * JavaFX thread takes everything in the queue and adds it to the model in one
+ * go, so a fast simulation doesn't flood the JavaFX thread with one update per
+ * game. Only the newest results that the model keeps are handed over.
+ */
+public class GameResultBatcher {
+    private static final int FRAMES_PER_SECOND = 10;
+
+    private final StatsModel statsModel;
+    private final Queue<GameResult> pending = new ConcurrentLinkedQueue<>();
+    private final Timeline timeline;
+    private volatile boolean cancelled = false;
+
+    public GameResultBatcher(StatsModel statsModel) {
+        this.statsModel = statsModel;
+        timeline = new Timeline(new KeyFrame(Duration.millis(1000.0 / FRAMES_PER_SECOND), event -> drain()));
+        timeline.setCycleCount(Animation.INDEFINITE);
+    }
+
+    /**
+     * Queues a result. Can be called from any thread.
+     * @param result The result
+     */
+    public void add(GameResult result) {
+        if (!cancelled)
+            pending.add(result);
+    }
+
+    /**
+     * Starts handing over results. Must be called on the JavaFX thread.
+     */
+    public void start() {
+        timeline.play();
+    }
+
+    /**
+     * Hands over the results still queued and stops. Must be called on the JavaFX thread.
+     */
+    public void stop() {
+        timeline.stop();
+        drain();
+    }
+
+    /**
+     * Stops and drops the results still queued, and those that come later,
+     * e.g. when the simulation is replaced by a new one. Must be called on
+     * the JavaFX thread.
+     */
+    public void cancel() {
+        cancelled = true;
+        timeline.stop();
+        pending.clear();
+    }
+
+    private void drain() {
+        ArrayDeque<GameResult> batch = new ArrayDeque<>();
+        GameResult result;
+        while ((result = pending.poll()) != null) {
+            if (batch.size() == StatsModel.MAX_RESULTS)
+                batch.removeFirst(); // would be dropped by the model anyway
+            batch.addLast(result);
+        }
+        if (!batch.isEmpty())
+            statsModel.addGameResults(batch);
+    }
+}
@@ -12,11 +12,19 @@ import javafx.beans.property.StringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
 /**
  *
  * @author jeppjleemoritzled
  */
 public class StatsModel {
+    // Oldest results are dropped beyond this, so long simulations don't fill the memory
+    static final int MAX_RESULTS = 10_000;
+
     private final ObservableList<GameResult> gameResults = 
             FXCollections.observableArrayList();
     
@@ -40,7 +48,31 @@ public class StatsModel {
     }
     
     public synchronized void addGameResult(GameResult gr) {
-        gameResults.add(gr);
+        addGameResults(Collections.singletonList(gr));
+    }
+
+    /**
+     * Adds the results with one change to the list, so listeners like the
+     * list view only update once, also when the oldest results are dropped.
+     * @param results The results to add
+     */
+    public synchronized void addGameResults(Collection<GameResult> results) {
+        int overflow = gameResults.size() + results.size() - MAX_RESULTS;
+        if (overflow <= 0) {
+            gameResults.addAll(results);
+            return;
+        }
+        // One replacement instead of a removal and an addition
+        List<GameResult> kept = new ArrayList<>(MAX_RESULTS);
+        kept.addAll(gameResults.subList(Math.min(overflow, gameResults.size()), gameResults.size()));
+        int skip = Math.max(0, results.size() - MAX_RESULTS);
+        for (GameResult result : results) {
+            if (skip > 0)
+                skip--;
+            else
+                kept.add(result);
+        }
+        gameResults.setAll(kept);
     }
 
     public void clear() {
@@ -20,6 +20,8 @@ import javafx.scene.text.Text;
 
 import java.net.URL;
 import java.util.ResourceBundle;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -27,6 +29,9 @@ import java.util.logging.Logger;
 public class UTTTGameController implements Initializable {
 
     private long botDelay = 500;
+    // Clicks are ignored while a bot moves in the background
+    private volatile boolean botThinking = false;
+    private volatile boolean gameEnded = false;
     @FXML
     private GridPane gridMacro;
 
@@ -72,46 +77,44 @@ public class UTTTGameController implements Initializable {
         // AIvsAI
         else if (bot0 != null && bot1 != null) {
 
-            Thread t = new Thread(() -> {
-                while (model.getGameOverState() == GameManager.GameOverState.Active
-                        && model.getGameState().getField().getAvailableMoves().size()>0) {
-                    // FIX HERE, KEEPS ASKING FOR VALID MOVE IF BOT PLAYS INVALID
-                    boolean isValid = doBotMove();
-                    try {
-                        Thread.sleep(botDelay);
-                    }
-                    catch (InterruptedException ex) {
-                        Logger.getLogger(UTTTGameController.class.getName()).log(Level.SEVERE, null, ex);
-                    }
-                }
-            });
-            t.setDaemon(true); // Stops thread when main thread dies
-            t.start();
-
+            playBots();
         }
     }
 
-    private boolean doBotMove() {
-        int currentPlayer = model.getCurrentPlayer();
-        Boolean valid = model.doMove();
-        if(!valid) {
-            int opponent = 0;
-            if(model.getCurrentPlayer()==0)
-                opponent = 1;
-            model.forceGameOver(opponent);
-            showWinnerPane(""+opponent);
+    // One bot move, then the next after the delay, without a thread of its own
+    private void playBots() {
+        if (gameEnded || model.getGameOverState() != GameManager.GameOverState.Active
+                || model.getGameState().getField().getAvailableMoveCount() == 0)
+            return;
+        doBotMove().thenRunAsync(this::playBots,
+                CompletableFuture.delayedExecutor(botDelay, TimeUnit.MILLISECONDS));
+    }
 
-        }
-        else
-            checkAndLockIfGameEnd(currentPlayer);
-        return valid;
+    private CompletableFuture<Boolean> doBotMove() {
+        botThinking = true;
+        return model.doMoveAsync().exceptionally(ex -> {
+            Logger.getLogger(UTTTGameController.class.getName()).log(Level.SEVERE, null, ex);
+            return false;
+        }).thenApply(valid -> {
+            if(!valid) {
+                int opponent = 0;
+                if(model.getCurrentPlayer()==0)
+                    opponent = 1;
+                model.forceGameOver(opponent);
+                String winner = ""+opponent;
+                Platform.runLater(() -> showWinnerPane(winner));
+            }
+            else
+                checkAndLockIfGameEnd();
+            botThinking = false;
+            return valid;
+        });
     }
 
     private boolean doMove(IMove move) throws Exception {
-        int currentPlayer = model.getCurrentPlayer();
         boolean validMove = model.doMove(move);
         if(!validMove) return false;
-        checkAndLockIfGameEnd(currentPlayer);
+        checkAndLockIfGameEnd();
         return true;
     }
 
@@ -247,17 +250,18 @@ public class UTTTGameController implements Initializable {
                         btn.setFocusTraversable(false);
                         btn.setOnMouseClicked(
                                 event -> {
+                                    if (botThinking)
+                                        return;
+                                    boolean validMove = false;
                                     try {
-                                        doMove((IMove) btn.getUserData()); // Player move
+                                        validMove = doMove((IMove) btn.getUserData()); // Player move
                                     } catch (Exception e) {
                                         e.printStackTrace();
                                     }
 
                                     boolean isHumanVsBot = player0 != null ^ player1 != null;
-                                    if (model.getGameOverState() == GameManager.GameOverState.Active && isHumanVsBot) {
-                                        int currentPlayer = model.getCurrentPlayer();
-                                        Boolean valid = model.doMove();
-                                        checkAndLockIfGameEnd(currentPlayer);
+                                    if (validMove && model.getGameOverState() == GameManager.GameOverState.Active && isHumanVsBot) {
+                                        doBotMove();
                                     }
                                 }
                         );
@@ -270,7 +274,7 @@ public class UTTTGameController implements Initializable {
         }
     }
 
-    private void checkAndLockIfGameEnd(int currentPlayer) {
+    private void checkAndLockIfGameEnd() {
         if (model.getGameOverState() != GameManager.GameOverState.Active) {
             String[][] macroboard = model.getMacroboard();
             // Lock game
@@ -285,7 +289,9 @@ public class UTTTGameController implements Initializable {
                 Platform.runLater(() -> showWinnerPane("TIE"));
             }
             else {
-                Platform.runLater(() -> showWinnerPane(currentPlayer + ""));
+                // The winner, also when the other bot forfeited on time
+                int winner = model.getWinner();
+                Platform.runLater(() -> showWinnerPane(winner + ""));
             }
         }
     }
@@ -356,6 +362,17 @@ public class UTTTGameController implements Initializable {
         Platform.runLater(() -> updateGUI());
     }
 
+    /**
+     * Called when the game window is closed. The bots are used again in the
+     * next game, so one still thinking on the human's time must stop.
+     */
+    public void endGame() {
+        gameEnded = true;
+        if (model != null) {
+            model.stopPondering();
+        }
+    }
+
     public void setupGame(IBot bot0, IBot bot1) {
         model = new BoardModel(bot0, bot1);
         this.bot0 = bot0;